@@ -0,0 +1,108 @@
+package interview.dataspark.currencyexchange;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+/***
+ * Concurrency limit for one class of endpoints (range, full-day or point lookups), so that a burst of one class cannot hold all servlet threads.
+ * At most maxConcurrent requests run at once and at most maxQueued more wait for a slot, each for at most maxWaitMillis; anything beyond is rejected immediately.
+ * @author Kenny
+ *
+ */
+public class CurrencyExchangeBulkhead {
+
+	private final String name;
+	private final int maxConcurrent;
+	private final int maxQueued;
+	private final long maxWaitMillis;
+
+	private final Semaphore permits;
+	private final AtomicInteger queued = new AtomicInteger();
+
+	private final AtomicLong admitted = new AtomicLong();
+	private final AtomicLong rejectedQueueFull = new AtomicLong();
+	private final AtomicLong rejectedTimeout = new AtomicLong();
+	private final AtomicLong queuedRequests = new AtomicLong();
+	private final AtomicLong totalQueueWaitNanos = new AtomicLong();
+	private final AtomicLong maxQueueWaitNanos = new AtomicLong();
+
+	public CurrencyExchangeBulkhead(String name, int maxConcurrent, int maxQueued, long maxWaitMillis) {
+		this.name = name;
+		this.maxConcurrent = maxConcurrent;
+		this.maxQueued = maxQueued;
+		this.maxWaitMillis = maxWaitMillis;
+		this.permits = new Semaphore(maxConcurrent, true);
+	}
+
+	/***
+	 * Takes a slot, waiting in the bounded queue if none is free. Every successful call must be followed by exactly one {@link #release()}.
+	 * @return true if a slot was taken, false if the request is to be rejected
+	 * @throws InterruptedException if interrupted while queued
+	 */
+	public boolean tryAcquire() throws InterruptedException {
+		//the timed form honours the fairness of the semaphore, the untimed one would take a slot ahead of queued requests
+		if (permits.tryAcquire(0, TimeUnit.MILLISECONDS)) {
+			admitted.incrementAndGet();
+			return true;
+		}
+		if (queued.incrementAndGet() > maxQueued) {
+			queued.decrementAndGet();
+			rejectedQueueFull.incrementAndGet();
+			return false;
+		}
+		long start = System.nanoTime();
+		boolean acquired;
+		try {
+			acquired = permits.tryAcquire(maxWaitMillis, TimeUnit.MILLISECONDS);
+		} finally {
+			queued.decrementAndGet();
+		}
+		long waitNanos = System.nanoTime() - start;
+		queuedRequests.incrementAndGet();
+		totalQueueWaitNanos.addAndGet(waitNanos);
+		long max;
+		while (waitNanos > (max = maxQueueWaitNanos.get()) && !maxQueueWaitNanos.compareAndSet(max, waitNanos));
+		if (!acquired) {
+			rejectedTimeout.incrementAndGet();
+			return false;
+		}
+		admitted.incrementAndGet();
+		return true;
+	}
+
+	/***
+	 * Frees the slot taken by a successful {@link #tryAcquire()}.
+	 */
+	public void release() {
+		permits.release();
+	}
+
+	/***
+	 * Returns limits, current occupancy, rejections and queue wait time of the bulkhead.
+	 * @return map of metric names to values
+	 */
+	public Map<String, Object> getMetrics() {
+		String prefix = "bulkhead." + name + ".";
+		Map<String, Object> metrics = new LinkedHashMap<String, Object>();
+		metrics.put(prefix + "maxConcurrent", maxConcurrent);
+		metrics.put(prefix + "maxQueued", maxQueued);
+		metrics.put(prefix + "active", maxConcurrent - permits.availablePermits());
+		metrics.put(prefix + "queued", queued.get());
+		metrics.put(prefix + "admitted", admitted.get());
+		metrics.put(prefix + "rejected.queueFull", rejectedQueueFull.get());
+		metrics.put(prefix + "rejected.timeout", rejectedTimeout.get());
+		metrics.put(prefix + "queueWait.count", queuedRequests.get());
+		metrics.put(prefix + "queueWait.totalMillis", TimeUnit.NANOSECONDS.toMillis(totalQueueWaitNanos.get()));
+		metrics.put(prefix + "queueWait.maxMillis", TimeUnit.NANOSECONDS.toMillis(maxQueueWaitNanos.get()));
+		return metrics;
+	}
+
+	public String getName() {
+		return name;
+	}
+
+}
@@ -0,0 +1,51 @@
+package interview.dataspark.currencyexchange;
+
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletResponse;
+
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
+import org.springframework.web.servlet.handler.HandlerInterceptorAdapter;
+
+/***
+ * Guards the endpoints it is registered for with a bulkhead, see CurrencyExchangeWebConfig.
+ * Rejected requests get a fast 503 with a Retry-After header and a json error message, without reaching the controller.
+ * @author Kenny
+ *
+ */
+public class CurrencyExchangeBulkheadInterceptor extends HandlerInterceptorAdapter {
+
+	private static final String ACQUIRED = CurrencyExchangeBulkheadInterceptor.class.getName() + ".ACQUIRED";
+
+	private final CurrencyExchangeBulkhead bulkhead;
+	private final int retryAfterSeconds;
+
+	public CurrencyExchangeBulkheadInterceptor(CurrencyExchangeBulkhead bulkhead, int retryAfterSeconds) {
+		this.bulkhead = bulkhead;
+		this.retryAfterSeconds = retryAfterSeconds;
+	}
+
+	@Override
+	public boolean preHandle(HttpServletRequest request, HttpServletResponse response, Object handler) throws Exception {
+		if (bulkhead.tryAcquire()) {
+			request.setAttribute(ACQUIRED, bulkhead);
+			return true;
+		}
+		response.setStatus(HttpStatus.SERVICE_UNAVAILABLE.value());
+		response.setHeader(HttpHeaders.RETRY_AFTER, String.valueOf(retryAfterSeconds));
+		response.setContentType(MediaType.APPLICATION_JSON_UTF8_VALUE);
+		response.getWriter().write("[\"Too many concurrent " + bulkhead.getName() + " requests, retry after " + retryAfterSeconds + " second(s)\"]");
+		return false;
+	}
+
+	@Override
+	public void afterCompletion(HttpServletRequest request, HttpServletResponse response, Object handler, Exception ex) throws Exception {
+		//only released by the interceptor which acquired it, in case several patterns match the same request
+		if (request.getAttribute(ACQUIRED) == bulkhead) {
+			request.removeAttribute(ACQUIRED);
+			bulkhead.release();
+		}
+	}
+
+}
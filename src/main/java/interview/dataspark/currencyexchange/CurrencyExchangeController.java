@@ -1,11 +1,14 @@
 package interview.dataspark.currencyexchange;
 
+import java.io.IOException;
 import java.util.List;
 
+import javax.servlet.http.HttpServletResponse;
+
 import org.springframework.beans.factory.annotation.Autowired;
-import org.springframework.cache.annotation.Cacheable;
 import org.springframework.web.bind.annotation.PathVariable;
 import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RequestParam;
 import org.springframework.web.bind.annotation.RestController;
 
 /***
@@ -19,6 +22,9 @@ public class CurrencyExchangeController {
 	@Autowired
 	private CurrencyExchangeService exchangeService;
 	
+	@Autowired
+	private CurrencyExchangeExporter exporter;
+	
 	/***
 	 * Getter method to main service module used by the currency exchange application
 	 * @return reference to ExchangeService instance 
@@ -35,6 +41,14 @@ public class CurrencyExchangeController {
 		this.exchangeService = exchangeService;
 	}
 
+	public CurrencyExchangeExporter getExporter() {
+		return exporter;
+	}
+
+	public void setExporter(CurrencyExchangeExporter exporter) {
+		this.exporter = exporter;
+	}
+
 	/***
 	 * Loads an introductory page detailing location of data repository, along with some instructions on how to access the rest of the APIs.
 	 * Maps to GET("/") method.
@@ -45,13 +59,22 @@ public class CurrencyExchangeController {
 		return exchangeService.loadIntroPageInfo();
 	}
 
+	/***
+	 * Reports size and hit counts of each tier of the rate store. Not cached.
+	 * Maps to GET("/Metrics") method.
+	 * @return List holding a map of metric names to values, to be parsed as json message
+	 */
+	@RequestMapping("/Metrics")
+	public List<Object> getMetrics() {
+		return exchangeService.getMetrics();
+	}
+
 	/***
 	 * Lists out all files available in the data repository 
 	 * Maps to GET("/ByDate") method.
 	 * @return List of strings of format "yyyy-MM-dd.txt" to be parsed in the page as json message
 	 */
 	@RequestMapping(value="/ByDate")
-	@Cacheable("fileNamesInRepository")
 	public List<Object> getAllDates() {
 		return exchangeService.getAllDates();
 	}
@@ -60,11 +83,12 @@ public class CurrencyExchangeController {
 	 * Returns exchange rates for all currencies for a given date
 	 * Maps to GET("/ByDate/{date}") method.
 	 * @param date of "yyyy-MM-dd" format
+	 * @param asOf if true, the latest available date on or before date is used instead, and reported as date next to requestedDate
 	 * @return If date is valid and data is available, the method returns a list of objects(date, currencyOfInterest, referenceCurrency, exchangeRate) to be parsed as json message list. Otherwise return error message.
 	 */
 	@RequestMapping("/ByDate/{date}")
-	@Cacheable(value="fileName", key="#date")
-	public List<Object> getRateByDate(@PathVariable String date) {
+	public List<Object> getRateByDate(@PathVariable String date, @RequestParam(value="asOf", defaultValue="false") boolean asOf) {
+		if (asOf) return exchangeService.getRateByDateAsOf(date);
 		return exchangeService.getRateByDate(date);
 	}
 
@@ -73,11 +97,12 @@ public class CurrencyExchangeController {
 	 * Maps to GET("/ByDate/{date}/{currencyOfInterest}") method.
 	 * @param date of "yyyy-MM-dd" format
 	 * @param currencyOfInterest of "XXX" format - case sensitive
+	 * @param asOf if true, the latest available date on or before date is used instead, and reported as date next to requestedDate
 	 * @return If date, currencyOfInterest is valid and data is available, the method returns an object(date, currencyOfInterest, referenceCurrency, exchangeRate) to be parsed as json message. Otherwise return error message.
 	 */
 	@RequestMapping("/ByDate/{date}/{currencyOfInterest}")
-	@Cacheable(value="singleEntryByCurrencyByDate", key="#date + #currencyOfInterest")
-	public List<Object> getSpecificRateByDate(@PathVariable("date") String date, @PathVariable("currencyOfInterest") String currencyOfInterest) {
+	public List<Object> getSpecificRateByDate(@PathVariable("date") String date, @PathVariable("currencyOfInterest") String currencyOfInterest, @RequestParam(value="asOf", defaultValue="false") boolean asOf) {
+		if (asOf) return exchangeService.getSpecificRateByDateAsOf(date, currencyOfInterest);
 		return exchangeService.getSpecificRateByDate(date, currencyOfInterest);
 	}
 	
@@ -87,11 +112,12 @@ public class CurrencyExchangeController {
 	 * @param date of "yyyy-MM-dd" format
 	 * @param currencyOfInterest of "XXX" format - case sensitive
 	 * @param referenceCurrency of "XXX" format - case sensitive
+	 * @param asOf if true, the latest available date on or before date is used instead, and reported as date next to requestedDate
 	 * @return If date, currencyOfInterest,referenceCurrency is valid and data is available, the method returns an object(date, currencyOfInterest, referenceCurrency, exchangeRate) to be parsed as json message. Otherwise return error message. Error message to be returned if currencyOfInterest==referenceCurrency.
 	 */
 	@RequestMapping("/ByDate/{date}/{currencyOfInterest}/{referenceCurrency}")
-	@Cacheable(value="singleEntryByCurrencyByDateNewRef", key="#date + #currencyOfInterest + #referenceCurrency")
-	public List<Object> getSpecificRateByDate(@PathVariable("date") String date, @PathVariable("currencyOfInterest") String currencyOfInterest, @PathVariable("referenceCurrency") String referenceCurrency) {
+	public List<Object> getSpecificRateByDate(@PathVariable("date") String date, @PathVariable("currencyOfInterest") String currencyOfInterest, @PathVariable("referenceCurrency") String referenceCurrency, @RequestParam(value="asOf", defaultValue="false") boolean asOf) {
+		if (asOf) return exchangeService.getSpecificRateByDateAsOf(date, currencyOfInterest, referenceCurrency);
 		return exchangeService.getSpecificRateByDate(date, currencyOfInterest, referenceCurrency);
 	}
 
@@ -101,7 +127,6 @@ public class CurrencyExchangeController {
 	 * @return Static instructions on accessing exchange rates for specified currencies and date ranges.
 	 */
 	@RequestMapping("/ByCurrency")
-	@Cacheable(value="listAllCurrencies")
 	public List<Object> getAllCurrencies() {
 		return exchangeService.getAllCurrencies();
 	}
@@ -113,7 +138,6 @@ public class CurrencyExchangeController {
 	 * @return Static instructions on accessing exchange rates for specified currencies and date ranges. 
 	 */
 	@RequestMapping("/ByCurrency/{currencyOfInterest}")
-	@Cacheable(value="allEntriesByCurrency", key="#currencyOfInterest")
 	public List<Object> getRateByCurrency(@PathVariable String currencyOfInterest) {
 		return exchangeService.getRateByCurrency(currencyOfInterest);
 	}
@@ -123,11 +147,12 @@ public class CurrencyExchangeController {
 	 * Maps to GET("/ByCurrency/{currencyOfInterest}/{date}") method.
 	 * @param date of "yyyy-MM-dd" format
 	 * @param currencyOfInterest of "XXX" format - case sensitive
+	 * @param asOf if true, the latest available date on or before date is used instead, and reported as date next to requestedDate
 	 * @return If date, currencyOfInterest is valid and data is available, the method returns an object(date, currencyOfInterest, referenceCurrency, exchangeRate) to be parsed as json message. Otherwise return error message.
 	 */
 	@RequestMapping("/ByCurrency/{currencyOfInterest}/{date}")
-	@Cacheable(value="singleEntryByCurrencyAndDate", key="#date + #currencyOfInterest")
-	public List<Object> getSpecificRateByCurrency(@PathVariable("currencyOfInterest") String currencyOfInterest, @PathVariable("date") String date) {
+	public List<Object> getSpecificRateByCurrency(@PathVariable("currencyOfInterest") String currencyOfInterest, @PathVariable("date") String date, @RequestParam(value="asOf", defaultValue="false") boolean asOf) {
+		if (asOf) return exchangeService.getSpecificRateByDateAsOf(date, currencyOfInterest);
 		return exchangeService.getSpecificRateByDate(date, currencyOfInterest);
 	}
 	
@@ -139,8 +164,36 @@ public class CurrencyExchangeController {
 	 * @return If currencyOfInterest, startDate, endDate is valid and data is available, the method returns a list of objects(date, currencyOfInterest, referenceCurrency, exchangeRate) to be parsed as json message list. Otherwise return error message.
 	 */
 	@RequestMapping("/ByCurrency/{currencyOfInterest}/{startDate}/{endDate}")
-	@Cacheable(value="specifiedEntriesByCurrencyAndDateRange", key="#startDate + #endDate + #currencyOfInterest")
 	public List<Object> getSpecifiedRatesByCurrency(@PathVariable("currencyOfInterest") String currencyOfInterest, @PathVariable("startDate") String startDate, @PathVariable("endDate") String endDate) {
 		return exchangeService.getSpecifiedRatesByCurrency(currencyOfInterest, startDate, endDate);
 	}
+
+	/***
+	 * Returns exchange rates for several currencies for a given date range, as a matrix of dates by currencies
+	 * Maps to GET("/ByCurrencies/{currenciesOfInterest}/{startDate}/{endDate}") method.
+	 * @param currenciesOfInterest comma separated list of "XXX" format - case sensitive
+	 * @param startDate of "yyyy-MM-dd" format
+	 * @param endDate of "yyyy-MM-dd" format
+	 * @param referenceCurrency of "XXX" format - case sensitive, optional: if not set, rates are returned as recorded
+	 * @return If currenciesOfInterest, startDate, endDate is valid and data is available, the method returns a matrix(startDate, endDate, referenceCurrency, currencies, dates, rates) to be parsed as json message. Otherwise return error message.
+	 */
+	@RequestMapping("/ByCurrencies/{currenciesOfInterest}/{startDate}/{endDate}")
+	public List<Object> getRatesByCurrencies(@PathVariable("currenciesOfInterest") String currenciesOfInterest, @PathVariable("startDate") String startDate, @PathVariable("endDate") String endDate, @RequestParam(value="referenceCurrency", required=false) String referenceCurrency) {
+		return exchangeService.getRatesByCurrencies(currenciesOfInterest, startDate, endDate, referenceCurrency);
+	}
+
+	/***
+	 * Streams all daily files for a given date range in one response, for bulk loads. Not cached.
+	 * Maps to GET("/Export/{startDate}/{endDate}") method.
+	 * @param startDate of "yyyy-MM-dd" format
+	 * @param endDate of "yyyy-MM-dd" format
+	 * @param format raw, framed (default) or normalized, see CurrencyExchangeExporter
+	 * @param response the export is streamed to
+	 * @return Nothing once the export is streamed. If startDate, endDate or format is not valid or no data is available, return error message.
+	 * @throws IOException if a daily file cannot be read, or the response cannot be written
+	 */
+	@RequestMapping("/Export/{startDate}/{endDate}")
+	public List<Object> export(@PathVariable("startDate") String startDate, @PathVariable("endDate") String endDate, @RequestParam(value="format", defaultValue="framed") String format, HttpServletResponse response) throws IOException {
+		return exporter.export(startDate, endDate, format, response);
+	}
 }
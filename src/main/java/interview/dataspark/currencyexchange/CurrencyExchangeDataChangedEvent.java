@@ -0,0 +1,32 @@
+package interview.dataspark.currencyexchange;
+
+import java.util.Collections;
+import java.util.List;
+
+import org.springframework.context.ApplicationEvent;
+
+/***
+ * Published by the rate store once ingested days replace or add to the data it holds.
+ * Listeners drop whatever they built from the previous data, e.g. cached responses.
+ * @author Kenny
+ *
+ */
+public class CurrencyExchangeDataChangedEvent extends ApplicationEvent {
+
+	private static final long serialVersionUID = 1L;
+
+	private final List<String> dates;
+
+	public CurrencyExchangeDataChangedEvent(Object source, List<String> dates) {
+		super(source);
+		this.dates = Collections.unmodifiableList(dates);
+	}
+
+	/***
+	 * @return dates of "yyyy-MM-dd" format which were ingested
+	 */
+	public List<String> getDates() {
+		return dates;
+	}
+
+}
@@ -0,0 +1,206 @@
+package interview.dataspark.currencyexchange;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+/***
+ * Compact, read-only holder of all exchange records parsed from one daily "yyyy-MM-dd.txt" file.
+ * Records are kept in file order as parallel arrays (currencyOfInterest, referenceCurrency, units, rate) so a whole day costs a handful of objects.
+ * A day can be encoded into, and decoded from, a ByteBuffer so it can be kept off-heap by the rate store.
+ * @author Kenny
+ *
+ */
+public class CurrencyExchangeDay {
+
+	private final String date;
+	private final String[] currencies;
+	private final String[] referenceCurrencies;
+	private final double[] units;
+	private final double[] rates;
+	private final int malformedLines;
+
+	public CurrencyExchangeDay(String date, String[] currencies, String[] referenceCurrencies, double[] units, double[] rates) {
+		this(date, currencies, referenceCurrencies, units, rates, 0);
+	}
+
+	public CurrencyExchangeDay(String date, String[] currencies, String[] referenceCurrencies, double[] units, double[] rates, int malformedLines) {
+		this.date = date;
+		this.currencies = currencies;
+		this.referenceCurrencies = referenceCurrencies;
+		this.units = units;
+		this.rates = rates;
+		this.malformedLines = malformedLines;
+	}
+
+	/***
+	 * Reads and parses a whole daily file, see {@link #parse(String, List)}. The stream is closed.
+	 * @param date of "yyyy-MM-dd" format
+	 * @param in raw content of the daily file
+	 * @return parsed day, possibly holding no records
+	 * @throws IOException if the stream cannot be read
+	 */
+	public static CurrencyExchangeDay read(String date, InputStream in) throws IOException {
+		return parse(date, readLines(in));
+	}
+
+	/***
+	 * Reads all lines of a daily file. The stream is closed.
+	 * @param in raw content of the daily file
+	 * @return lines of the file
+	 * @throws IOException if the stream cannot be read
+	 */
+	public static List<String> readLines(InputStream in) throws IOException {
+		List<String> lines = new ArrayList<String>();
+		BufferedReader reader = new BufferedReader(new InputStreamReader(in, StandardCharsets.UTF_8));
+		try {
+			String line;
+			while ((line = reader.readLine()) != null) {
+				lines.add(line);
+			}
+		} finally {
+			reader.close();
+		}
+		return lines;
+	}
+
+	/***
+	 * Parses the lines of a daily file of format "1 CHF traded at 1.04 times USD". Lines which do not have 7 items or carry non numeric values are skipped, and counted as malformed unless blank.
+	 * @param date of "yyyy-MM-dd" format
+	 * @param lines raw lines of the daily file
+	 * @return parsed day, possibly holding no records
+	 */
+	public static CurrencyExchangeDay parse(String date, List<String> lines) {
+		String[] currencies = new String[lines.size()];
+		String[] referenceCurrencies = new String[lines.size()];
+		double[] units = new double[lines.size()];
+		double[] rates = new double[lines.size()];
+		int size = 0;
+		int malformedLines = 0;
+		for (String line : lines) {
+			String[] items = line.split(" ");
+			if (items.length == 7) {
+				try {
+					units[size] = Double.parseDouble(items[0]);
+					rates[size] = Double.parseDouble(items[4]);
+				} catch (NumberFormatException e) {
+					malformedLines++;
+					continue;
+				}
+				currencies[size] = items[1];
+				referenceCurrencies[size] = items[6];
+				size++;
+			} else if (!line.trim().isEmpty()) {
+				malformedLines++;
+			}
+		}
+		return new CurrencyExchangeDay(date, Arrays.copyOf(currencies, size), Arrays.copyOf(referenceCurrencies, size), Arrays.copyOf(units, size), Arrays.copyOf(rates, size), malformedLines);
+	}
+
+	/***
+	 * Decodes a day previously written by {@link #encode()}. The buffer position is not modified.
+	 * @param date of "yyyy-MM-dd" format
+	 * @param buffer encoded day
+	 * @return decoded day
+	 */
+	public static CurrencyExchangeDay decode(String date, ByteBuffer buffer) {
+		ByteBuffer in = buffer.duplicate();
+		in.rewind();
+		int size = in.getInt();
+		String[] currencies = new String[size];
+		String[] referenceCurrencies = new String[size];
+		double[] units = new double[size];
+		double[] rates = new double[size];
+		for (int i = 0; i < size; i++) {
+			currencies[i] = getCode(in);
+			referenceCurrencies[i] = getCode(in);
+			units[i] = in.getDouble();
+			rates[i] = in.getDouble();
+		}
+		return new CurrencyExchangeDay(date, currencies, referenceCurrencies, units, rates);
+	}
+
+	/***
+	 * Encodes this day into a direct (off-heap) buffer.
+	 * @return flipped direct buffer holding the encoded day
+	 */
+	public ByteBuffer encode() {
+		byte[][] codes = new byte[size() * 2][];
+		int capacity = 4;
+		for (int i = 0; i < size(); i++) {
+			codes[2 * i] = currencies[i].getBytes(StandardCharsets.UTF_8);
+			codes[2 * i + 1] = referenceCurrencies[i].getBytes(StandardCharsets.UTF_8);
+			capacity += 2 + codes[2 * i].length + 2 + codes[2 * i + 1].length + 16;
+		}
+		ByteBuffer out = ByteBuffer.allocateDirect(capacity);
+		out.putInt(size());
+		for (int i = 0; i < size(); i++) {
+			putCode(out, codes[2 * i]);
+			putCode(out, codes[2 * i + 1]);
+			out.putDouble(units[i]);
+			out.putDouble(rates[i]);
+		}
+		out.flip();
+		return out;
+	}
+
+	private static void putCode(ByteBuffer out, byte[] code) {
+		out.putShort((short) code.length);
+		out.put(code);
+	}
+
+	private static String getCode(ByteBuffer in) {
+		byte[] code = new byte[in.getShort()];
+		in.get(code);
+		return new String(code, StandardCharsets.UTF_8);
+	}
+
+	public String getDate() {
+		return date;
+	}
+	public int size() {
+		return currencies.length;
+	}
+	public boolean isEmpty() {
+		return currencies.length == 0;
+	}
+	/***
+	 * @return number of lines skipped when the day was parsed, not kept when the day is encoded
+	 */
+	public int getMalformedLines() {
+		return malformedLines;
+	}
+	public String getCurrencyOfInterest(int i) {
+		return currencies[i];
+	}
+	public String getReferenceCurrency(int i) {
+		return referenceCurrencies[i];
+	}
+	public double getUnits(int i) {
+		return units[i];
+	}
+	public double getRate(int i) {
+		return rates[i];
+	}
+	/***
+	 * @param i record index
+	 * @return rate of one unit of currencyOfInterest expressed in referenceCurrency
+	 */
+	public double getExchangeRate(int i) {
+		return rates[i] / units[i];
+	}
+	/***
+	 * @param i record index
+	 * @return record i as a model to be parsed as json message
+	 */
+	public CurrencyExchangeModel toModel(int i) {
+		return new CurrencyExchangeModel(date, currencies[i], referenceCurrencies[i], getExchangeRate(i));
+	}
+
+}
@@ -0,0 +1,313 @@
+package interview.dataspark.currencyexchange;
+
+import java.io.File;
+import java.io.FileNotFoundException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.math.BigDecimal;
+import java.nio.ByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.channels.WritableByteChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.StandardOpenOption;
+import java.time.LocalDate;
+import java.time.format.DateTimeFormatter;
+import java.time.format.DateTimeFormatterBuilder;
+import java.time.format.DateTimeParseException;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicLong;
+
+import javax.servlet.http.HttpServletResponse;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+/***
+ * Streams the daily files of a date range in a single response, for bulk loads downstream.
+ * <ul>
+ * <li>raw: daily files concatenated as they are, each one ending with a line break</li>
+ * <li>framed: as raw, each daily file preceded by a framing line "#yyyy-MM-dd", as in a monthly bundle once decompressed</li>
+ * <li>normalized: one line "yyyy-MM-dd,currencyOfInterest,referenceCurrency,exchangeRate" per record, as parsed by the rate store, numbers in plain notation</li>
+ * </ul>
+ * Daily files kept on disk are sent with FileChannel.transferTo, other repositories are streamed through a single buffer, and normalized records are written into the same buffer.
+ * The servlet output stream is not a channel, so transferTo still copies the file through a small intermediate heap array; no daily file is ever held whole.
+ * An export therefore costs a constant amount of memory, whatever the range.
+ * Records are read with Snapshot.scanRates, so an export does not disturb the tiers of the rate store.
+ * Every date is exported as of the snapshot its range was taken from: a daily file modified or removed since the snapshot listed it is not sent,
+ * its records as read through the snapshot are written instead, one line "units currencyOfInterest traded at rate times referenceCurrency" each,
+ * and nothing is written for it if the snapshot had not read them yet.
+ * @author Kenny
+ *
+ */
+@Component
+public class CurrencyExchangeExporter {
+
+	public static final String FORMAT_RAW = "raw";
+	public static final String FORMAT_FRAMED = "framed";
+	public static final String FORMAT_NORMALIZED = "normalized";
+
+	private static final DateTimeFormatter FORMATTER = new DateTimeFormatterBuilder().appendPattern("yyyy-MM-dd").parseStrict().toFormatter();
+
+	private static final byte[] LINE_BREAK = {'\r', '\n'};
+
+	@Autowired
+	private CurrencyExchangeRepository repository;
+
+	@Autowired
+	private CurrencyExchangeRateStore rateStore;
+
+	@Value("${export.bufferBytes:65536}")
+	private int bufferBytes;
+
+	private final AtomicLong exports = new AtomicLong();
+	private final AtomicLong exportedDays = new AtomicLong();
+	private final AtomicLong exportedBytes = new AtomicLong();
+	private final AtomicLong fileChannelBytes = new AtomicLong();
+
+	/***
+	 * Writes the export of every available date from start to end inclusive to the response.
+	 * @param start of "yyyy-MM-dd" format
+	 * @param end of "yyyy-MM-dd" format
+	 * @param format raw, framed or normalized
+	 * @param response the export is written to, as text/plain with a .txt file name, or text/csv with a .csv file name for the normalized format
+	 * @return null once the export is written, or error message to be parsed as json message if dates or format are not valid, or no data is available
+	 * @throws IOException if a daily file cannot be read, or the response cannot be written
+	 */
+	public List<Object> export(String start, String end, String format, HttpServletResponse response) throws IOException {
+		List<Object> list = new ArrayList<Object>();
+		if (!FORMAT_RAW.equals(format) && !FORMAT_FRAMED.equals(format) && !FORMAT_NORMALIZED.equals(format)) {
+			list.add("Unknown export format - " + format + ", expected " + FORMAT_RAW + ", " + FORMAT_FRAMED + " or " + FORMAT_NORMALIZED);
+			return list;
+		}
+		CurrencyExchangeRateStore.Snapshot snapshot = rateStore.snapshot();
+		List<String> dates;
+		try {
+			LocalDate startDate = LocalDate.parse(start, FORMATTER);
+			LocalDate endDate = LocalDate.parse(end, FORMATTER);
+			dates = startDate.isAfter(endDate) ? snapshot.getDates(end, start) : snapshot.getDates(start, end);
+		} catch (DateTimeParseException e) {
+			list.add("Invalid dates - " + start + ", " + end + ", expected yyyy-MM-dd format");
+			return list;
+		}
+		if (dates.isEmpty()) {
+			list.add("No data available for specified dates - " + start + ", " + end);
+			return list;
+		}
+
+		boolean csv = FORMAT_NORMALIZED.equals(format);
+		response.setContentType(csv ? "text/csv;charset=UTF-8" : "text/plain;charset=UTF-8");
+		response.setHeader("Content-Disposition", "attachment; filename=\"" + dates.get(0) + "_" + dates.get(dates.size() - 1) + "_" + format + (csv ? ".csv" : ".txt") + "\"");
+		export(snapshot, dates, format, Channels.newChannel(response.getOutputStream()));
+		return null;
+	}
+
+	/***
+	 * Writes the export of the given dates to a channel, see the class description for the formats.
+	 * @param snapshot of the rate store the dates were taken from, read for the normalized format and for daily files which changed since
+	 * @param dates of "yyyy-MM-dd" format
+	 * @param format raw, framed or normalized
+	 * @param out channel the export is written to, not closed
+	 * @return number of bytes written
+	 * @throws IOException if a daily file cannot be read, or the channel cannot be written
+	 */
+	public long export(CurrencyExchangeRateStore.Snapshot snapshot, List<String> dates, String format, WritableByteChannel out) throws IOException {
+		CurrencyExchangeRequestTrace trace = CurrencyExchangeRequestTrace.current();
+		long start = trace.begin();
+		ByteBuffer buffer = ByteBuffer.allocate(bufferBytes);
+		long bytes = 0;
+		try {
+			for (String date : dates) {
+				if (FORMAT_NORMALIZED.equals(format)) {
+					bytes += writeNormalized(snapshot.scanRates(date), buffer, out);
+					continue;
+				}
+				if (FORMAT_FRAMED.equals(format)) {
+					bytes += put(buffer, (MonthlyBundleCurrencyExchangeRepository.FRAME_PREFIX + date).getBytes(StandardCharsets.UTF_8), out);
+					bytes += put(buffer, LINE_BREAK, out);
+				}
+				long sent = snapshot.getLastModified(date) == repository.lastModified(date) ? send(date, buffer, out) : -1;
+				//the file changed or was removed since the snapshot listed it
+				bytes += sent >= 0 ? sent : writeRaw(snapshot.scanRates(date), buffer, out);
+			}
+			flush(buffer, out);
+		} finally {
+			trace.addDaysScanned(dates.size());
+			trace.end(CurrencyExchangeRequestTrace.Phase.SCAN, start);
+		}
+		exports.incrementAndGet();
+		exportedDays.addAndGet(dates.size());
+		exportedBytes.addAndGet(bytes);
+		return bytes;
+	}
+
+	/***
+	 * Returns the number of exports and the bytes written, of which the bytes sent with FileChannel.transferTo.
+	 * @return map of metric names to values
+	 */
+	public Map<String, Object> getMetrics() {
+		Map<String, Object> metrics = new LinkedHashMap<String, Object>();
+		metrics.put("export.exports", exports.get());
+		metrics.put("export.days", exportedDays.get());
+		metrics.put("export.bytes", exportedBytes.get());
+		metrics.put("export.fileChannelBytes", fileChannelBytes.get());
+		return metrics;
+	}
+
+	/***
+	 * Sends a daily file as it is.
+	 * @return number of bytes written, or -1 if the file was removed in the meantime, in which case nothing is written
+	 */
+	private long send(String date, ByteBuffer buffer, WritableByteChannel out) throws IOException {
+		File file = repository.getFile(date);
+		try {
+			return file != null ? transfer(file, buffer, out) : copy(date, buffer, out);
+		} catch (FileNotFoundException | NoSuchFileException e) {
+			return -1;
+		}
+	}
+
+	/***
+	 * Sends a daily file kept on disk with FileChannel.transferTo, after the bytes pending in the buffer. A line break is added unless the file ends with one.
+	 */
+	private long transfer(File file, ByteBuffer buffer, WritableByteChannel out) throws IOException {
+		long bytes = 0;
+		try (FileChannel channel = FileChannel.open(file.toPath(), StandardOpenOption.READ)) {
+			flush(buffer, out);
+			long size = channel.size();
+			long position = 0;
+			while (position < size) {
+				long transferred = channel.transferTo(position, size - position, out);
+				//0 once the file was truncated while being sent
+				if (transferred == 0) break;
+				position += transferred;
+			}
+			size = position;
+			fileChannelBytes.addAndGet(size);
+			bytes += size;
+			if (size > 0) {
+				//the last byte is read into the buffer, empty after the flush above, and dropped
+				channel.read(buffer, size - 1);
+				boolean lineBreak = buffer.get(0) == '\n';
+				buffer.clear();
+				if (lineBreak) return bytes;
+			}
+		}
+		return bytes + put(buffer, LINE_BREAK, out);
+	}
+
+	/***
+	 * Streams a daily file not kept on disk through the buffer. A line break is added unless the file ends with one.
+	 */
+	private long copy(String date, ByteBuffer buffer, WritableByteChannel out) throws IOException {
+		long bytes = 0;
+		byte last = '\n';
+		try (InputStream in = repository.open(date)) {
+			while (true) {
+				if (!buffer.hasRemaining()) flush(buffer, out);
+				int read = in.read(buffer.array(), buffer.arrayOffset() + buffer.position(), buffer.remaining());
+				if (read < 0) break;
+				if (read > 0) last = buffer.get(buffer.position() + read - 1);
+				buffer.position(buffer.position() + read);
+				bytes += read;
+			}
+		}
+		return last == '\n' ? bytes : bytes + put(buffer, LINE_BREAK, out);
+	}
+
+	private long writeNormalized(CurrencyExchangeDay day, ByteBuffer buffer, WritableByteChannel out) throws IOException {
+		if (day == null) return 0;
+		long bytes = 0;
+		StringBuilder line = new StringBuilder(64);
+		for (int i = 0; i < day.size(); i++) {
+			line.setLength(0);
+			line.append(day.getDate()).append(',').append(day.getCurrencyOfInterest(i)).append(',').append(day.getReferenceCurrency(i)).append(',').append(toPlainString(day.getExchangeRate(i)));
+			bytes += put(buffer, line, out) + put(buffer, LINE_BREAK, out);
+		}
+		return bytes;
+	}
+
+	/***
+	 * Writes records in the daily file format, malformed lines of the original file excepted.
+	 */
+	private long writeRaw(CurrencyExchangeDay day, ByteBuffer buffer, WritableByteChannel out) throws IOException {
+		if (day == null) return 0;
+		long bytes = 0;
+		StringBuilder line = new StringBuilder(64);
+		for (int i = 0; i < day.size(); i++) {
+			line.setLength(0);
+			line.append(toPlainString(day.getUnits(i))).append(' ').append(day.getCurrencyOfInterest(i)).append(" traded at ")
+				.append(toPlainString(day.getRate(i))).append(" times ").append(day.getReferenceCurrency(i));
+			bytes += put(buffer, line, out) + put(buffer, LINE_BREAK, out);
+		}
+		return bytes;
+	}
+
+	private static String toPlainString(double value) {
+		return BigDecimal.valueOf(value).stripTrailingZeros().toPlainString();
+	}
+
+	/***
+	 * Appends an ASCII line to the buffer, flushing it whenever full.
+	 * @return number of bytes appended
+	 */
+	private static int put(ByteBuffer buffer, CharSequence line, WritableByteChannel out) throws IOException {
+		for (int j = 0; j < line.length(); j++) {
+			if (!buffer.hasRemaining()) flush(buffer, out);
+			//dates, currency codes and numbers are ASCII
+			buffer.put((byte) line.charAt(j));
+		}
+		return line.length();
+	}
+
+	/***
+	 * Appends bytes to the buffer, flushing it first if they do not fit.
+	 * @return number of bytes appended
+	 */
+	private static int put(ByteBuffer buffer, byte[] bytes, WritableByteChannel out) throws IOException {
+		if (buffer.remaining() < bytes.length) flush(buffer, out);
+		buffer.put(bytes);
+		return bytes.length;
+	}
+
+	/***
+	 * Writes the bytes pending in the buffer, and clears it.
+	 */
+	private static void flush(ByteBuffer buffer, WritableByteChannel out) throws IOException {
+		buffer.flip();
+		while (buffer.hasRemaining()) {
+			out.write(buffer);
+		}
+		buffer.clear();
+	}
+
+	public CurrencyExchangeRepository getRepository() {
+		return repository;
+	}
+
+	public void setRepository(CurrencyExchangeRepository repository) {
+		this.repository = repository;
+	}
+
+	public CurrencyExchangeRateStore getRateStore() {
+		return rateStore;
+	}
+
+	public void setRateStore(CurrencyExchangeRateStore rateStore) {
+		this.rateStore = rateStore;
+	}
+
+	public int getBufferBytes() {
+		return bufferBytes;
+	}
+
+	public void setBufferBytes(int bufferBytes) {
+		this.bufferBytes = bufferBytes;
+	}
+
+}
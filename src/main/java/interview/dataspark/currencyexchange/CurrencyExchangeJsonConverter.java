@@ -0,0 +1,60 @@
+package interview.dataspark.currencyexchange;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.lang.reflect.Type;
+
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpOutputMessage;
+import org.springframework.http.converter.HttpMessageNotWritableException;
+import org.springframework.http.converter.json.MappingJackson2HttpMessageConverter;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+/***
+ * Json converter which times serialization as the "json" phase of the request trace.
+ * The Server-Timing header is set before the body is streamed, so it reports the phases up to serialization.
+ * Only for requests sampled by the trace is the body serialized into a buffer first, so that their header includes serialization as well.
+ * @author Kenny
+ *
+ */
+public class CurrencyExchangeJsonConverter extends MappingJackson2HttpMessageConverter {
+
+	public CurrencyExchangeJsonConverter(ObjectMapper objectMapper) {
+		super(objectMapper);
+	}
+
+	@Override
+	protected void writeInternal(Object object, Type type, final HttpOutputMessage outputMessage) throws IOException, HttpMessageNotWritableException {
+		CurrencyExchangeRequestTrace trace = CurrencyExchangeRequestTrace.current();
+		if (!trace.isActive()) {
+			super.writeInternal(object, type, outputMessage);
+			return;
+		}
+		if (!trace.isSampled()) {
+			outputMessage.getHeaders().set(CurrencyExchangeTimingFilter.SERVER_TIMING, trace.toServerTiming());
+			long start = trace.begin();
+			super.writeInternal(object, type, outputMessage);
+			trace.end(CurrencyExchangeRequestTrace.Phase.JSON, start);
+			return;
+		}
+		long start = trace.begin();
+		final ByteArrayOutputStream buffer = new ByteArrayOutputStream(1024);
+		super.writeInternal(object, type, new HttpOutputMessage() {
+			@Override
+			public HttpHeaders getHeaders() {
+				return outputMessage.getHeaders();
+			}
+			@Override
+			public OutputStream getBody() {
+				return buffer;
+			}
+		});
+		trace.end(CurrencyExchangeRequestTrace.Phase.JSON, start);
+		outputMessage.getHeaders().set(CurrencyExchangeTimingFilter.SERVER_TIMING, trace.toServerTiming());
+		outputMessage.getHeaders().setContentLength(buffer.size());
+		buffer.writeTo(outputMessage.getBody());
+	}
+
+}
@@ -2,6 +2,7 @@ package interview.dataspark.currencyexchange;
 
 import org.springframework.boot.SpringApplication;
 import org.springframework.boot.autoconfigure.SpringBootApplication;
+import org.springframework.scheduling.annotation.EnableScheduling;
 
 /***
  * Main standalone application for the currency exchange
@@ -9,6 +10,7 @@ import org.springframework.boot.autoconfigure.SpringBootApplication;
  *
  */
 @SpringBootApplication
+@EnableScheduling
 public class CurrencyExchangeMainApp {
 
 	public static void main(String[] args) {		
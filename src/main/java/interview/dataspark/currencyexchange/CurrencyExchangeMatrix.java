@@ -0,0 +1,106 @@
+package interview.dataspark.currencyexchange;
+
+import java.io.IOException;
+import java.util.List;
+
+import com.fasterxml.jackson.annotation.JsonInclude;
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.databind.JsonSerializer;
+import com.fasterxml.jackson.databind.SerializerProvider;
+import com.fasterxml.jackson.databind.annotation.JsonSerialize;
+
+/***
+ * Model created to hold exchange rates of several currencies of interest over a date range, as a matrix of dates by currencies.
+ * rates holds one column per entry of currencies, each holding one rate per entry of dates; a cell is NaN, written as null in json, when no rate is available for that date and currency.
+ * When referenceCurrency is not set, every cell holds the rate as recorded in the daily file, and referenceCurrencies holds the reference currency of each column.
+ * All fields are private with its associated getter/setter methods.
+ * @author Kenny
+ *
+ */
+public class CurrencyExchangeMatrix {
+
+	private String startDate;
+	private String endDate;
+	@JsonInclude(JsonInclude.Include.NON_NULL)
+	private String referenceCurrency;
+	private List<String> currencies;
+	@JsonInclude(JsonInclude.Include.NON_NULL)
+	private List<String> referenceCurrencies;
+	private List<String> dates;
+	@JsonSerialize(using = ColumnsSerializer.class)
+	private double[][] rates;
+
+	public CurrencyExchangeMatrix(String startDate, String endDate, String referenceCurrency, List<String> currencies, List<String> referenceCurrencies, List<String> dates, double[][] rates) {
+		this.startDate = startDate;
+		this.endDate = endDate;
+		this.referenceCurrency = referenceCurrency;
+		this.currencies = currencies;
+		this.referenceCurrencies = referenceCurrencies;
+		this.dates = dates;
+		this.rates = rates;
+	}
+	public CurrencyExchangeMatrix() {
+	}
+	public String getStartDate() {
+		return startDate;
+	}
+	public void setStartDate(String startDate) {
+		this.startDate = startDate;
+	}
+	public String getEndDate() {
+		return endDate;
+	}
+	public void setEndDate(String endDate) {
+		this.endDate = endDate;
+	}
+	public String getReferenceCurrency() {
+		return referenceCurrency;
+	}
+	public void setReferenceCurrency(String referenceCurrency) {
+		this.referenceCurrency = referenceCurrency;
+	}
+	public List<String> getCurrencies() {
+		return currencies;
+	}
+	public void setCurrencies(List<String> currencies) {
+		this.currencies = currencies;
+	}
+	public List<String> getReferenceCurrencies() {
+		return referenceCurrencies;
+	}
+	public void setReferenceCurrencies(List<String> referenceCurrencies) {
+		this.referenceCurrencies = referenceCurrencies;
+	}
+	public List<String> getDates() {
+		return dates;
+	}
+	public void setDates(List<String> dates) {
+		this.dates = dates;
+	}
+	public double[][] getRates() {
+		return rates;
+	}
+	public void setRates(double[][] rates) {
+		this.rates = rates;
+	}
+
+	/***
+	 * Writes the columns of rates as arrays of numbers, with null in place of NaN.
+	 */
+	public static class ColumnsSerializer extends JsonSerializer<double[][]> {
+		@Override
+		public void serialize(double[][] columns, JsonGenerator generator, SerializerProvider provider) throws IOException {
+			generator.writeStartArray();
+			for (double[] column : columns) {
+				generator.writeStartArray();
+				for (double rate : column) {
+					if (Double.isNaN(rate)) generator.writeNull();
+					else generator.writeNumber(rate);
+				}
+				generator.writeEndArray();
+			}
+			generator.writeEndArray();
+		}
+	}
+
+}
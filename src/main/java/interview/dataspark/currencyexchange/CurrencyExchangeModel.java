@@ -1,8 +1,11 @@
 package interview.dataspark.currencyexchange;
 
+import com.fasterxml.jackson.annotation.JsonInclude;
+
 /***
  * Model created to hold each currency exchange record per currencyOfInterest wrt referenceCurrency per date.  
  * All fields are private with its associated getter/setter methods. The methods should be self-explanatory.
+ * requestedDate is only set, and only serialized, for as-of lookups where date holds the latest available date on or before requestedDate.
  * @author Kenny
  *
  */
@@ -12,6 +15,8 @@ public class CurrencyExchangeModel {
 	private String currencyOfInterest;
 	private String referenceCurrency;
 	private double exchangeRate;
+	@JsonInclude(JsonInclude.Include.NON_NULL)
+	private String requestedDate;
 	
 	public CurrencyExchangeModel(String date, String currencyOfInterest, String referenceCurrency, double exchangeRate) {
 		super();
@@ -50,5 +55,11 @@ public class CurrencyExchangeModel {
 	public void setExchangeRate(double exchangeRate) {
 		this.exchangeRate = exchangeRate;
 	}
+	public String getRequestedDate() {
+		return requestedDate;
+	}
+	public void setRequestedDate(String requestedDate) {
+		this.requestedDate = requestedDate;
+	}
 	
 }
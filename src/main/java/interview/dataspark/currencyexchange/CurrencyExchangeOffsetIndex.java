@@ -0,0 +1,230 @@
+package interview.dataspark.currencyexchange;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+/***
+ * In-memory index of the daily files kept on disk, mapping each currency of interest to the byte offset and length of its lines.
+ * A single currency lookup on a date the rate store has not loaded reads only the lines of that currency, each with one positioned read,
+ * instead of reading and keeping the whole file. The index of a file is built on first access and rebuilt once the file modification time or length changes;
+ * the indexes of the most recently used maxFiles files are kept.
+ * A lookup only reads a file still at the modification time the caller expects, so that it returns the version of the caller's rate store snapshot.
+ * Repositories not keeping daily files on disk (zip, monthly bundles) are not indexed.
+ * The startup loader loads every date, so the index is only consulted with startupLoad.enabled=false.
+ * @author Kenny
+ *
+ */
+@Component
+public class CurrencyExchangeOffsetIndex {
+
+	@Autowired
+	private CurrencyExchangeRepository repository;
+
+	@Value("${offsetIndex.enabled:true}")
+	private boolean enabled;
+
+	@Value("${offsetIndex.maxFiles:4096}")
+	private int maxFiles;
+
+	private Map<String, FileIndex> files;
+
+	private final AtomicLong builds = new AtomicLong();
+	private final AtomicLong lookups = new AtomicLong();
+	private final AtomicLong bytesRead = new AtomicLong();
+
+	/***
+	 * Returns the records of a single currency of interest for a given date, read at the offsets held by the index.
+	 * @param date of "yyyy-MM-dd" format
+	 * @param currencyOfInterest of "XXX" format - case sensitive
+	 * @param lastModified modification time of the daily file the caller expects, e.g. as listed in its rate store snapshot
+	 * @return day holding only the records of the currency, possibly none, or null if the index is disabled, the daily file is not available on disk,
+	 * or its modification time is not the expected one before and after reading
+	 */
+	public CurrencyExchangeDay getRates(String date, String currencyOfInterest, long lastModified) {
+		if (!enabled) return null;
+		File file = repository.getFile(date);
+		if (file == null) return null;
+		CurrencyExchangeRequestTrace trace = CurrencyExchangeRequestTrace.current();
+		long start = trace.begin();
+		List<String> lines = new ArrayList<String>();
+		try (RandomAccessFile in = new RandomAccessFile(file, "r")) {
+			FileChannel channel = in.getChannel();
+			if (file.lastModified() != lastModified) return null;
+			FileIndex index = getIndex(date, file, channel);
+			long[] offsets = index.offsets.get(currencyOfInterest);
+			if (offsets != null) {
+				for (int i = 0; i < offsets.length; i += 2) {
+					lines.add(readLine(channel, offsets[i], (int) offsets[i + 1]));
+				}
+			}
+			//modified while being read, left to the rate store
+			if (file.lastModified() != lastModified) return null;
+		} catch (IOException e) {
+			//missing or unreadable file, left to the rate store
+			return null;
+		} finally {
+			trace.end(CurrencyExchangeRequestTrace.Phase.FILE, start);
+		}
+		lookups.incrementAndGet();
+		trace.addFilesOpened(1);
+		trace.addLinesParsed(lines.size());
+		start = trace.begin();
+		CurrencyExchangeDay day = CurrencyExchangeDay.parse(date, lines);
+		trace.end(CurrencyExchangeRequestTrace.Phase.PARSE, start);
+		return day;
+	}
+
+	/***
+	 * Returns the number of indexed files and the I/O spent on lookups.
+	 * @return map of metric names to values
+	 */
+	public Map<String, Object> getMetrics() {
+		Map<String, Object> metrics = new LinkedHashMap<String, Object>();
+		metrics.put("offsetIndex.enabled", enabled);
+		synchronized (this) {
+			metrics.put("offsetIndex.files", files == null ? 0 : files.size());
+		}
+		metrics.put("offsetIndex.builds", builds.get());
+		metrics.put("offsetIndex.lookups", lookups.get());
+		metrics.put("offsetIndex.bytesRead", bytesRead.get());
+		return metrics;
+	}
+
+	private FileIndex getIndex(String date, File file, FileChannel channel) throws IOException {
+		long lastModified = file.lastModified();
+		long length = channel.size();
+		synchronized (this) {
+			FileIndex index = getFiles().get(date);
+			if (index != null && index.lastModified == lastModified && index.length == length) return index;
+		}
+		//built outside the lock, a concurrent first access to the same file only costs a second build
+		FileIndex index = build(channel, lastModified, length);
+		synchronized (this) {
+			getFiles().put(date, index);
+		}
+		return index;
+	}
+
+	private Map<String, FileIndex> getFiles() {
+		if (files == null) {
+			files = new LinkedHashMap<String, FileIndex>(16, 0.75f, true) {
+				private static final long serialVersionUID = 1L;
+				@Override
+				protected boolean removeEldestEntry(Map.Entry<String, FileIndex> eldest) {
+					return size() > maxFiles;
+				}
+			};
+		}
+		return files;
+	}
+
+	/***
+	 * Scans the whole file once, recording where each line starts and the currency of interest it holds, i.e. its second item.
+	 */
+	private FileIndex build(FileChannel channel, long lastModified, long length) throws IOException {
+		ByteBuffer content = read(channel, 0, (int) length);
+		builds.incrementAndGet();
+
+		Map<String, long[]> offsets = new HashMap<String, long[]>();
+		byte[] bytes = content.array();
+		int lineStart = 0;
+		for (int i = 0; i <= content.limit(); i++) {
+			if (i < content.limit() && bytes[i] != '\n') continue;
+			int lineEnd = i > lineStart && bytes[i - 1] == '\r' ? i - 1 : i;
+			String currency = secondItem(bytes, lineStart, lineEnd);
+			if (currency != null) {
+				long[] previous = offsets.get(currency);
+				long[] next = previous == null ? new long[2] : Arrays.copyOf(previous, previous.length + 2);
+				next[next.length - 2] = lineStart;
+				next[next.length - 1] = lineEnd - lineStart;
+				offsets.put(currency, next);
+			}
+			lineStart = i + 1;
+		}
+		return new FileIndex(lastModified, length, offsets);
+	}
+
+	private static String secondItem(byte[] bytes, int from, int to) {
+		int start = -1;
+		for (int i = from; i < to; i++) {
+			if (bytes[i] != ' ') continue;
+			if (start >= 0) return new String(bytes, start, i - start, StandardCharsets.UTF_8);
+			start = i + 1;
+		}
+		return start >= 0 && start < to ? new String(bytes, start, to - start, StandardCharsets.UTF_8) : null;
+	}
+
+	private String readLine(FileChannel channel, long offset, int length) throws IOException {
+		ByteBuffer line = read(channel, offset, length);
+		return new String(line.array(), 0, line.limit(), StandardCharsets.UTF_8);
+	}
+
+	/***
+	 * Positioned read, leaving the position of the channel untouched. Stops short at the end of the file.
+	 */
+	private ByteBuffer read(FileChannel channel, long offset, int length) throws IOException {
+		ByteBuffer buffer = ByteBuffer.allocate(length);
+		while (buffer.hasRemaining()) {
+			if (channel.read(buffer, offset + buffer.position()) < 0) break;
+		}
+		buffer.flip();
+		bytesRead.addAndGet(buffer.limit());
+		return buffer;
+	}
+
+	/***
+	 * Offsets of one file as of its modification time and length: for each currency of interest, pairs of line offset and line length.
+	 */
+	private static class FileIndex {
+
+		private final long lastModified;
+		private final long length;
+		private final Map<String, long[]> offsets;
+
+		private FileIndex(long lastModified, long length, Map<String, long[]> offsets) {
+			this.lastModified = lastModified;
+			this.length = length;
+			this.offsets = offsets;
+		}
+	}
+
+	public CurrencyExchangeRepository getRepository() {
+		return repository;
+	}
+
+	public void setRepository(CurrencyExchangeRepository repository) {
+		this.repository = repository;
+	}
+
+	public boolean isEnabled() {
+		return enabled;
+	}
+
+	public void setEnabled(boolean enabled) {
+		this.enabled = enabled;
+	}
+
+	public int getMaxFiles() {
+		return maxFiles;
+	}
+
+	public void setMaxFiles(int maxFiles) {
+		this.maxFiles = maxFiles;
+	}
+
+}
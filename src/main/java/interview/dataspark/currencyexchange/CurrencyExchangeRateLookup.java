@@ -0,0 +1,54 @@
+package interview.dataspark.currencyexchange;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.TreeMap;
+
+/***
+ * Resolves the exchange rate of any pair of currencies on one day, with the records of the day read once however many pairs are looked up.
+ * A pair resolves to the rate recorded for it, else the inverse of the rate recorded the other way round, else the cross rate through the first reference currency,
+ * in alphabetical order, recorded for both currencies; the latter two are rounded to 2 decimals. The first record of a pair in the daily file is used.
+ * @author Kenny
+ *
+ */
+public class CurrencyExchangeRateLookup {
+
+	private final CurrencyExchangeDay day;
+
+	//index of the first record of each currency of interest against each of its reference currencies, sorted by reference currency
+	private final Map<String, TreeMap<String, Integer>> records = new HashMap<String, TreeMap<String, Integer>>();
+
+	public CurrencyExchangeRateLookup(CurrencyExchangeDay day) {
+		this.day = day;
+		for (int i = 0; i < day.size(); i++) {
+			TreeMap<String, Integer> references = records.get(day.getCurrencyOfInterest(i));
+			if (references == null) {
+				references = new TreeMap<String, Integer>();
+				records.put(day.getCurrencyOfInterest(i), references);
+			}
+			if (!references.containsKey(day.getReferenceCurrency(i))) references.put(day.getReferenceCurrency(i), i);
+		}
+	}
+
+	/***
+	 * @param currencyOfInterest of "XXX" format - case sensitive
+	 * @param referenceCurrency of "XXX" format - case sensitive
+	 * @return rate of currencyOfInterest against referenceCurrency, or NaN if none can be resolved or both currencies are the same
+	 */
+	public double getRate(String currencyOfInterest, String referenceCurrency) {
+		if (currencyOfInterest.equals(referenceCurrency)) return Double.NaN;
+		TreeMap<String, Integer> ofInterest = records.get(currencyOfInterest);
+		TreeMap<String, Integer> reference = records.get(referenceCurrency);
+		Integer direct = ofInterest == null ? null : ofInterest.get(referenceCurrency);
+		if (direct != null) return day.getExchangeRate(direct);
+		Integer inverse = reference == null ? null : reference.get(currencyOfInterest);
+		if (inverse != null) return Math.round((1.0/day.getExchangeRate(inverse))*100.0)/100.0;
+		if (ofInterest != null && reference != null) {
+			for (Map.Entry<String, Integer> record : ofInterest.entrySet()) {
+				Integer cross = reference.get(record.getKey());
+				if (cross != null) return Math.round(day.getExchangeRate(record.getValue())/day.getExchangeRate(cross)*100.0)/100.0;
+			}
+		}
+		return Double.NaN;
+	}
+}
@@ -0,0 +1,684 @@
+package interview.dataspark.currencyexchange;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.time.LocalDate;
+import java.time.format.DateTimeFormatter;
+import java.time.format.DateTimeFormatterBuilder;
+import java.time.format.DateTimeParseException;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.NavigableMap;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.concurrent.atomic.AtomicReferenceFieldUpdater;
+import java.util.concurrent.locks.ReentrantLock;
+
+import javax.annotation.PostConstruct;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.ApplicationEventPublisher;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+/***
+ * Two tier store of parsed daily exchange records used by the currency exchange service.
+ * <p>
+ * Data is published as immutable snapshots, each one a sorted map of the available dates, used for as-of lookups, to the records of each date.
+ * A reader takes the current snapshot with a single volatile read and uses it for the whole request, so it never blocks and never sees a half-applied update.
+ * A date listed but not read yet is read on first access only if its daily file is still the one the snapshot listed; a file modified since is skipped until the next refresh.
+ * Ingestion reads and parses outside of any lock, builds the next snapshot as a copy of the current one and publishes it with a compare-and-set.
+ * A snapshot no longer referenced by any request is reclaimed by the garbage collector, together with the direct buffers only it refers to.
+ * <p>
+ * Within a snapshot the records of a date never change, only their representation does. Dates within the hot window (counted back from the latest available date)
+ * are kept on-heap as CurrencyExchangeDay objects. Older dates are kept encoded in direct buffers outside the heap, and are decoded on every access.
+ * A cold date accessed often enough is promoted on-heap and keeps its direct buffer; once more than promotedCapacity dates are promoted, the least accessed one is demoted back to that buffer.
+ * @author Kenny
+ *
+ */
+@Component
+public class CurrencyExchangeRateStore {
+
+	private static final DateTimeFormatter FORMATTER = new DateTimeFormatterBuilder().appendPattern("yyyy-MM-dd").parseStrict().toFormatter();
+
+	private static final Logger LOGGER = LoggerFactory.getLogger(CurrencyExchangeRateStore.class);
+
+	@Autowired
+	private CurrencyExchangeRepository repository;
+
+	@Autowired(required=false)
+	private ApplicationEventPublisher eventPublisher;
+
+	@Value("${rateStore.hotWindowDays:31}")
+	private int hotWindowDays;
+
+	@Value("${rateStore.promoteAfterHits:3}")
+	private int promoteAfterHits;
+
+	@Value("${rateStore.promotedCapacity:64}")
+	private int promotedCapacity;
+
+	@Value("${rateStore.refreshEnabled:false}")
+	private boolean refreshEnabled;
+
+	private final AtomicReference<Snapshot> current = new AtomicReference<Snapshot>(new Snapshot(0, new TreeMap<String, Entry>()));
+
+	//serializes ingestions with each other, never taken by readers
+	private final Object ingestionLock = new Object();
+	//guards the promoted set, readers which cannot take it skip the promotion
+	private final ReentrantLock promotionLock = new ReentrantLock();
+	private final Set<Entry> promoted = ConcurrentHashMap.newKeySet();
+
+	private final AtomicLong hotHits = new AtomicLong();
+	private final AtomicLong coldHits = new AtomicLong();
+	private final AtomicLong misses = new AtomicLong();
+	private final AtomicLong promotions = new AtomicLong();
+	private final AtomicLong demotions = new AtomicLong();
+	private final AtomicLong refreshes = new AtomicLong();
+
+	/***
+	 * Publishes the first snapshot, holding every date available in the repository. Records are read on first access, or by the startup loader.
+	 * @throws IOException if the repository cannot be listed
+	 */
+	@PostConstruct
+	public void init() throws IOException {
+		Map<String, Entry> entries = new HashMap<String, Entry>();
+		for (String fileName : repository.getFileNames()) {
+			String date = parseFileName(fileName);
+			if (date != null) {
+				entries.put(date, new Entry(date, repository.lastModified(date)));
+			}
+		}
+		synchronized (ingestionLock) {
+			publish(entries, Collections.<String>emptySet());
+		}
+	}
+
+	/***
+	 * @return the current snapshot, to be used for every lookup of one request
+	 */
+	public Snapshot snapshot() {
+		return current.get();
+	}
+
+	/***
+	 * Resolves a date against the current snapshot, see {@link Snapshot#floorDate(String)}.
+	 * @param date of "yyyy-MM-dd" format
+	 * @return available date of "yyyy-MM-dd" format, or null if the date is invalid or no earlier data is available
+	 */
+	public String floorDate(String date) {
+		return snapshot().floorDate(date);
+	}
+
+	/***
+	 * @return all dates of "yyyy-MM-dd" format available in the current snapshot, in ascending order
+	 */
+	public List<String> getDates() {
+		return snapshot().getDates();
+	}
+
+	/***
+	 * Returns all records for a given date from the current snapshot, see {@link Snapshot#getRates(String)}.
+	 * @param date of "yyyy-MM-dd" format
+	 * @return parsed day, or null if no data is available for the date
+	 */
+	public CurrencyExchangeDay getRates(String date) {
+		return snapshot().getRates(date);
+	}
+
+	/***
+	 * Returns size and hit counts of each tier, as of the current snapshot. Cold bytes include the buffers kept by promoted dates.
+	 * @return map of metric names to values
+	 */
+	public Map<String, Object> getMetrics() {
+		Snapshot snapshot = snapshot();
+		int hot = 0;
+		int cold = 0;
+		long coldBytes = 0;
+		for (Entry entry : snapshot.entries.values()) {
+			Object content = entry.content;
+			if (content instanceof CurrencyExchangeDay) {
+				hot++;
+			} else if (content instanceof ByteBuffer) {
+				cold++;
+			}
+			ByteBuffer encoded = entry.encoded;
+			if (encoded != null) coldBytes += encoded.capacity();
+		}
+		Map<String, Object> metrics = new LinkedHashMap<String, Object>();
+		metrics.put("rateStore.version", snapshot.version);
+		metrics.put("rateStore.hotWindowDays", hotWindowDays);
+		metrics.put("rateStore.dates", snapshot.entries.size());
+		metrics.put("rateStore.latestDate", snapshot.entries.isEmpty() ? null : snapshot.entries.lastKey());
+		metrics.put("rateStore.hot.size", hot);
+		metrics.put("rateStore.hot.promoted", promoted.size());
+		metrics.put("rateStore.hot.hits", hotHits.get());
+		metrics.put("rateStore.cold.size", cold);
+		metrics.put("rateStore.cold.bytes", coldBytes);
+		metrics.put("rateStore.cold.hits", coldHits.get());
+		metrics.put("rateStore.misses", misses.get());
+		metrics.put("rateStore.promotions", promotions.get());
+		metrics.put("rateStore.demotions", demotions.get());
+		metrics.put("rateStore.refreshes", refreshes.get());
+		return metrics;
+	}
+
+	/***
+	 * Fills in days loaded in bulk, e.g. at startup. This does not change the data: dates already loaded are left untouched,
+	 * and a new snapshot is only published for dates the repository did not list.
+	 * @param days parsed days
+	 */
+	public void putAll(Collection<CurrencyExchangeDay> days) {
+		Snapshot snapshot = snapshot();
+		Map<String, CurrencyExchangeDay> unlisted = new HashMap<String, CurrencyExchangeDay>();
+		Map<String, Long> lastModified = new HashMap<String, Long>();
+		for (CurrencyExchangeDay day : days) {
+			Entry entry = snapshot.entries.get(day.getDate());
+			if (entry != null) {
+				entry.fill(day, isInHotWindow(day.getDate(), snapshot.latestDate()));
+			} else {
+				unlisted.put(day.getDate(), day);
+				lastModified.put(day.getDate(), repository.lastModified(day.getDate()));
+			}
+		}
+		if (!unlisted.isEmpty()) {
+			synchronized (ingestionLock) {
+				apply(unlisted, lastModified, Collections.<String>emptySet());
+			}
+		}
+	}
+
+	/***
+	 * Ingests new or corrected days into the store as one new snapshot, replacing the dates already held, and publishes a CurrencyExchangeDataChangedEvent
+	 * so that anything built from the previous data (cached responses) is invalidated.
+	 * Ingested days are not read from a file: a day ingested over a daily file is read from the file again on the next refresh, and exports write its records instead of the file.
+	 * @param days parsed days
+	 */
+	public void ingest(Collection<CurrencyExchangeDay> days) {
+		Map<String, CurrencyExchangeDay> changes = new HashMap<String, CurrencyExchangeDay>();
+		for (CurrencyExchangeDay day : days) {
+			changes.put(day.getDate(), day);
+		}
+		List<String> dates;
+		synchronized (ingestionLock) {
+			dates = apply(changes, Collections.<String, Long>emptyMap(), Collections.<String>emptySet());
+		}
+		dataChanged(dates);
+	}
+
+	/***
+	 * Ingests every daily file added to, modified in or removed from the repository since it was last read, as one new snapshot.
+	 * Files are listed and parsed without holding the ingestion lock; a date whose entry was replaced in the meantime, e.g. by a reader or another refresh, is left as it is.
+	 * Runs every rateStore.refreshMillis when rateStore.refreshEnabled is set.
+	 * @return dates of "yyyy-MM-dd" format which changed, in ascending order
+	 * @throws IOException if the repository cannot be listed
+	 */
+	public List<String> refresh() throws IOException {
+		Snapshot snapshot = snapshot();
+		Set<String> listed = new HashSet<String>();
+		Map<String, CurrencyExchangeDay> changes = new HashMap<String, CurrencyExchangeDay>();
+		Map<String, Long> lastModified = new HashMap<String, Long>();
+		for (String fileName : repository.getFileNames()) {
+			String date = parseFileName(fileName);
+			if (date == null) continue;
+			listed.add(date);
+			//taken before reading, so that a file modified while being read is read again on the next refresh
+			long modified = repository.lastModified(date);
+			Entry entry = snapshot.entries.get(date);
+			if (entry != null && entry.lastModified == modified) continue;
+			try {
+				changes.put(date, CurrencyExchangeDay.read(date, repository.open(date)));
+				lastModified.put(date, modified);
+			} catch (IOException e) {
+				LOGGER.warn("Could not refresh {}.txt - {}", date, e.getMessage());
+			}
+		}
+		//days ingested without a file are not removed
+		Set<String> removed = new HashSet<String>();
+		for (Entry entry : snapshot.entries.values()) {
+			if (entry.lastModified != 0 && !listed.contains(entry.date)) removed.add(entry.date);
+		}
+		if (changes.isEmpty() && removed.isEmpty()) return Collections.emptyList();
+
+		List<String> dates;
+		synchronized (ingestionLock) {
+			NavigableMap<String, Entry> entries = snapshot().entries;
+			//dates whose entry was replaced since the listing keep the newer entry
+			for (Iterator<String> iterator = changes.keySet().iterator(); iterator.hasNext();) {
+				String date = iterator.next();
+				if (entries.get(date) != snapshot.entries.get(date)) iterator.remove();
+			}
+			for (Iterator<String> iterator = removed.iterator(); iterator.hasNext();) {
+				String date = iterator.next();
+				if (entries.get(date) != snapshot.entries.get(date)) iterator.remove();
+			}
+			if (changes.isEmpty() && removed.isEmpty()) return Collections.emptyList();
+			dates = apply(changes, lastModified, removed);
+			refreshes.incrementAndGet();
+			LOGGER.info("Refreshed {} dates from {}, now at version {}", dates.size(), repository.getLocation(), snapshot().version);
+		}
+		dataChanged(dates);
+		return dates;
+	}
+
+	@Scheduled(fixedDelayString="${rateStore.refreshMillis:60000}", initialDelayString="${rateStore.refreshMillis:60000}")
+	public void scheduledRefresh() throws IOException {
+		if (refreshEnabled) refresh();
+	}
+
+	/***
+	 * Builds and publishes the next snapshot, with changed days replacing the entries of their dates and removed dates dropped.
+	 * Dates which fell out of the hot window are demoted once the snapshot is published. Called holding the ingestion lock.
+	 * @param lastModified modification time of the daily file each changed day was read from, days missing from it were not read from a file
+	 * @return changed and removed dates, in ascending order
+	 */
+	private List<String> apply(Map<String, CurrencyExchangeDay> changes, Map<String, Long> lastModified, Set<String> removed) {
+		TreeMap<String, Entry> next = new TreeMap<String, Entry>(snapshot().entries);
+		next.keySet().removeAll(removed);
+		Map<String, Entry> entries = new HashMap<String, Entry>();
+		for (CurrencyExchangeDay day : changes.values()) {
+			if (parseDate(day.getDate()) == null) continue;
+			Long modified = lastModified.get(day.getDate());
+			//0 for a day not read from a file, as for a missing file
+			Entry entry = new Entry(day.getDate(), modified != null ? modified : 0);
+			entries.put(entry.date, entry);
+			next.put(entry.date, entry);
+		}
+		String latestDate = next.isEmpty() ? null : next.lastKey();
+		for (Entry entry : entries.values()) {
+			entry.fill(changes.get(entry.date), isInHotWindow(entry.date, latestDate));
+		}
+
+		Snapshot snapshot = publish(entries, removed);
+		for (Iterator<Entry> iterator = promoted.iterator(); iterator.hasNext();) {
+			Entry entry = iterator.next();
+			if (snapshot.entries.get(entry.date) != entry) iterator.remove();
+		}
+		for (Entry entry : snapshot.entries.values()) {
+			if (!promoted.contains(entry) && !isInHotWindow(entry.date, snapshot.latestDate())) entry.demote();
+		}
+		List<String> dates = new ArrayList<String>(entries.keySet());
+		dates.addAll(removed);
+		Collections.sort(dates);
+		return dates;
+	}
+
+	/***
+	 * Publishes the current entries with changes applied and removed dates dropped as the next snapshot.
+	 * Retried when another thread published in between, e.g. a reader publishing a date missing from the listing.
+	 */
+	private Snapshot publish(Map<String, Entry> changes, Set<String> removed) {
+		while (true) {
+			Snapshot snapshot = current.get();
+			TreeMap<String, Entry> entries = new TreeMap<String, Entry>(snapshot.entries);
+			entries.putAll(changes);
+			entries.keySet().removeAll(removed);
+			Snapshot next = new Snapshot(snapshot.version + 1, Collections.unmodifiableNavigableMap(entries));
+			if (current.compareAndSet(snapshot, next)) return next;
+		}
+	}
+
+	/***
+	 * Publishes a day read by a reader as the new entry of its date, unless the current entry of the date is no longer the expected one,
+	 * and announces the change like any ingestion. Readers never take the ingestion lock.
+	 */
+	private void publishRead(Entry expected, CurrencyExchangeDay day, long lastModified) {
+		String date = day.getDate();
+		Entry entry = new Entry(date, lastModified);
+		while (true) {
+			Snapshot snapshot = current.get();
+			if (snapshot.entries.get(date) != expected) return;
+			String latestDate = snapshot.latestDate();
+			entry.fill(day, isInHotWindow(date, latestDate == null || date.compareTo(latestDate) > 0 ? date : latestDate));
+			TreeMap<String, Entry> entries = new TreeMap<String, Entry>(snapshot.entries);
+			entries.put(date, entry);
+			if (current.compareAndSet(snapshot, new Snapshot(snapshot.version + 1, Collections.unmodifiableNavigableMap(entries)))) break;
+		}
+		dataChanged(Collections.singletonList(date));
+	}
+
+	private void dataChanged(List<String> dates) {
+		if (eventPublisher != null && !dates.isEmpty()) {
+			eventPublisher.publishEvent(new CurrencyExchangeDataChangedEvent(this, dates));
+		}
+	}
+
+	private void promote(Entry entry, CurrencyExchangeDay day) {
+		if (!promotionLock.tryLock()) return;
+		try {
+			if (!entry.promote(day)) return;
+			promoted.add(entry);
+			promotions.incrementAndGet();
+			if (promoted.size() > promotedCapacity) {
+				demoteLeastAccessed();
+			}
+		} finally {
+			promotionLock.unlock();
+		}
+	}
+
+	private void demoteLeastAccessed() {
+		Entry victim = null;
+		for (Entry entry : promoted) {
+			if (victim == null || entry.accesses.get() < victim.accesses.get()) {
+				victim = entry;
+			}
+		}
+		if (victim == null) return;
+		promoted.remove(victim);
+		victim.demote();
+		//halve the history of every promoted date so that old popularity fades
+		for (Entry entry : promoted) {
+			entry.accesses.set(entry.accesses.get() / 2);
+		}
+		demotions.incrementAndGet();
+	}
+
+	private boolean isInHotWindow(String date, String latestDate) {
+		LocalDate day = parseDate(date);
+		return day != null && (latestDate == null || day.isAfter(parseDate(latestDate).minusDays(hotWindowDays)));
+	}
+
+	private static String parseFileName(String fileName) {
+		if (!fileName.endsWith(".txt")) return null;
+		String date = fileName.substring(0, fileName.length() - 4);
+		return parseDate(date) == null ? null : date;
+	}
+
+	private static LocalDate parseDate(String date) {
+		try {
+			return LocalDate.parse(date, FORMATTER);
+		} catch (DateTimeParseException e) {
+			return null;
+		}
+	}
+
+	/***
+	 * Immutable version of the store data. Lookups never block, and always see the same dates and records.
+	 */
+	public final class Snapshot {
+
+		private final long version;
+		private final NavigableMap<String, Entry> entries;
+
+		private Snapshot(long version, NavigableMap<String, Entry> entries) {
+			this.version = version;
+			this.entries = entries;
+		}
+
+		public long getVersion() {
+			return version;
+		}
+
+		/***
+		 * Resolves a date to the latest available date on or before it, using the in-memory date index only.
+		 * @param date of "yyyy-MM-dd" format
+		 * @return available date of "yyyy-MM-dd" format, or null if the date is invalid or no earlier data is available
+		 */
+		public String floorDate(String date) {
+			LocalDate day = parseDate(date);
+			return day == null ? null : entries.floorKey(day.format(FORMATTER));
+		}
+
+		/***
+		 * @param date of "yyyy-MM-dd" format
+		 * @return true if the date is available and its records were read already, in either tier
+		 */
+		public boolean isLoaded(String date) {
+			Entry entry = entries.get(date);
+			return entry != null && entry.content != null;
+		}
+
+		/***
+		 * @param date of "yyyy-MM-dd" format
+		 * @return modification time of the daily file the records of the date are read from, as listed in this snapshot, or 0 if the date is not available or was not read from a file
+		 */
+		public long getLastModified(String date) {
+			Entry entry = entries.get(date);
+			return entry == null ? 0 : entry.lastModified;
+		}
+
+		/***
+		 * @param date of "yyyy-MM-dd" format
+		 * @return true if the date is available
+		 */
+		public boolean contains(String date) {
+			return entries.containsKey(date);
+		}
+
+		/***
+		 * @return all available dates of "yyyy-MM-dd" format, in ascending order
+		 */
+		public List<String> getDates() {
+			return new ArrayList<String>(entries.keySet());
+		}
+
+		/***
+		 * @param start of "yyyy-MM-dd" format
+		 * @param end of "yyyy-MM-dd" format
+		 * @return available dates of "yyyy-MM-dd" format from start to end inclusive, in ascending order
+		 */
+		public List<String> getDates(String start, String end) {
+			return new ArrayList<String>(entries.subMap(start, true, end, true).keySet());
+		}
+
+		/***
+		 * Returns all records for a given date, reading the daily file from the repository on first access.
+		 * A file modified since this snapshot listed it is not read into it, and is left to the next refresh to publish.
+		 * @param date of "yyyy-MM-dd" format
+		 * @return parsed day, or null if no data is available for the date as listed in this snapshot
+		 */
+		public CurrencyExchangeDay getRates(String date) {
+			CurrencyExchangeRequestTrace trace = CurrencyExchangeRequestTrace.current();
+			long start = trace.begin();
+			try {
+				return getRates(date, trace);
+			} finally {
+				trace.end(CurrencyExchangeRequestTrace.Phase.STORE, start);
+			}
+		}
+
+		/***
+		 * Returns all records for a given date for a scan over many dates, e.g. an export, leaving the store as it is:
+		 * accesses are not counted, cold dates are not promoted, and a daily file read for a date not loaded yet is not kept.
+		 * @param date of "yyyy-MM-dd" format
+		 * @return parsed day, or null if the date is not available as listed in this snapshot
+		 */
+		public CurrencyExchangeDay scanRates(String date) {
+			Entry entry = entries.get(date);
+			if (entry == null) return null;
+			CurrencyExchangeRequestTrace trace = CurrencyExchangeRequestTrace.current();
+			long start = trace.begin();
+			try {
+				Object content = entry.content;
+				if (content instanceof CurrencyExchangeDay) {
+					trace.addHotHit();
+					return (CurrencyExchangeDay) content;
+				}
+				if (content instanceof ByteBuffer) {
+					trace.addColdHit();
+					return CurrencyExchangeDay.decode(date, (ByteBuffer) content);
+				}
+				return readListed(entry, trace);
+			} finally {
+				trace.end(CurrencyExchangeRequestTrace.Phase.STORE, start);
+			}
+		}
+
+		private String latestDate() {
+			return entries.isEmpty() ? null : entries.lastKey();
+		}
+
+		private CurrencyExchangeDay getRates(String date, CurrencyExchangeRequestTrace trace) {
+			Entry entry = entries.get(date);
+			if (entry == null) {
+				//a file added since the last refresh is read, and published in a new snapshot as refresh() would
+				if (parseDate(date) == null) return null;
+				long lastModified = repository.lastModified(date);
+				CurrencyExchangeDay day = read(date, trace);
+				if (day == null) return null;
+				publishRead(null, day, lastModified);
+				return day;
+			}
+			Object content = entry.content;
+			if (content instanceof CurrencyExchangeDay) {
+				hotHits.incrementAndGet();
+				trace.addHotHit();
+				entry.accesses.incrementAndGet();
+				return (CurrencyExchangeDay) content;
+			}
+			if (content instanceof ByteBuffer) {
+				coldHits.incrementAndGet();
+				trace.addColdHit();
+				CurrencyExchangeDay day = CurrencyExchangeDay.decode(date, (ByteBuffer) content);
+				if (entry.accesses.incrementAndGet() >= promoteAfterHits) {
+					promote(entry, day);
+				}
+				return day;
+			}
+			CurrencyExchangeDay day = readListed(entry, trace);
+			if (day == null) return null;
+			//a concurrent first access may have filled the entry first, and both readers return the same records
+			entry.fill(day, isInHotWindow(date, latestDate()));
+			return day;
+		}
+
+		/***
+		 * Reads the daily file of a listed date, unless it was modified since this snapshot listed it, before or while being read.
+		 * A newer version is not returned, so that a request scanning this snapshot never mixes versions; refresh() publishes it.
+		 */
+		private CurrencyExchangeDay readListed(Entry entry, CurrencyExchangeRequestTrace trace) {
+			if (repository.lastModified(entry.date) != entry.lastModified) return null;
+			CurrencyExchangeDay day = read(entry.date, trace);
+			return day == null || repository.lastModified(entry.date) != entry.lastModified ? null : day;
+		}
+
+		private CurrencyExchangeDay read(String date, CurrencyExchangeRequestTrace trace) {
+			misses.incrementAndGet();
+			List<String> lines;
+			long start = trace.begin();
+			try {
+				lines = CurrencyExchangeDay.readLines(repository.open(date));
+			} catch (IOException e) {
+				return null;
+			} finally {
+				trace.end(CurrencyExchangeRequestTrace.Phase.FILE, start);
+			}
+			trace.addFilesOpened(1);
+			trace.addLinesParsed(lines.size());
+			start = trace.begin();
+			CurrencyExchangeDay day = CurrencyExchangeDay.parse(date, lines);
+			trace.end(CurrencyExchangeRequestTrace.Phase.PARSE, start);
+			return day;
+		}
+	}
+
+	/***
+	 * Records of one date within a snapshot: null until read, then either a CurrencyExchangeDay (hot) or its encoding in a direct buffer (cold).
+	 * Both representations hold the same records, and the content is only ever swapped from one to the other with a compare-and-set.
+	 * A date once encoded keeps its buffer while promoted, so that promotion and demotion never allocate direct memory.
+	 */
+	private static final class Entry {
+
+		private static final AtomicReferenceFieldUpdater<Entry, Object> CONTENT = AtomicReferenceFieldUpdater.newUpdater(Entry.class, Object.class, "content");
+
+		private final String date;
+		private final long lastModified;
+		private final AtomicLong accesses = new AtomicLong();
+		private volatile Object content;
+		private volatile ByteBuffer encoded;
+
+		private Entry(String date, long lastModified) {
+			this.date = date;
+			this.lastModified = lastModified;
+		}
+
+		private void fill(CurrencyExchangeDay day, boolean hot) {
+			if (content != null) return;
+			if (hot) {
+				CONTENT.compareAndSet(this, null, day);
+				return;
+			}
+			ByteBuffer buffer = day.encode();
+			if (CONTENT.compareAndSet(this, null, buffer)) encoded = buffer;
+		}
+
+		private boolean promote(CurrencyExchangeDay day) {
+			Object value = content;
+			return value instanceof ByteBuffer && CONTENT.compareAndSet(this, value, day);
+		}
+
+		/***
+		 * Swaps a promoted date back to the buffer it was promoted from, its records being the same.
+		 */
+		private void demote() {
+			Object value = content;
+			if (value instanceof CurrencyExchangeDay && encoded != null) {
+				accesses.set(0);
+				CONTENT.compareAndSet(this, value, encoded);
+			}
+		}
+	}
+
+	public CurrencyExchangeRepository getRepository() {
+		return repository;
+	}
+
+	public void setRepository(CurrencyExchangeRepository repository) {
+		this.repository = repository;
+	}
+
+	public ApplicationEventPublisher getEventPublisher() {
+		return eventPublisher;
+	}
+
+	public void setEventPublisher(ApplicationEventPublisher eventPublisher) {
+		this.eventPublisher = eventPublisher;
+	}
+
+	public int getHotWindowDays() {
+		return hotWindowDays;
+	}
+
+	public void setHotWindowDays(int hotWindowDays) {
+		this.hotWindowDays = hotWindowDays;
+	}
+
+	public int getPromoteAfterHits() {
+		return promoteAfterHits;
+	}
+
+	public void setPromoteAfterHits(int promoteAfterHits) {
+		this.promoteAfterHits = promoteAfterHits;
+	}
+
+	public int getPromotedCapacity() {
+		return promotedCapacity;
+	}
+
+	public void setPromotedCapacity(int promotedCapacity) {
+		this.promotedCapacity = promotedCapacity;
+	}
+
+	public boolean isRefreshEnabled() {
+		return refreshEnabled;
+	}
+
+	public void setRefreshEnabled(boolean refreshEnabled) {
+		this.refreshEnabled = refreshEnabled;
+	}
+
+}
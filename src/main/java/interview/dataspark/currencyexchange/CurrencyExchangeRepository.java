@@ -0,0 +1,51 @@
+package interview.dataspark.currencyexchange;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.List;
+
+/***
+ * Source of the daily "yyyy-MM-dd.txt" exchange files read by the rate store.
+ * Implementations read from a plain directory, a zip archive or per-month compressed bundles; see CurrencyExchangeRepositoryConfig.
+ * @author Kenny
+ *
+ */
+public interface CurrencyExchangeRepository {
+
+	/***
+	 * Lists out all daily files available in the repository.
+	 * @return List of file names of format "yyyy-MM-dd.txt", in no particular order
+	 * @throws IOException if the repository cannot be read
+	 */
+	List<String> getFileNames() throws IOException;
+
+	/***
+	 * Opens the daily file of a given date. Compressed content is decompressed while being streamed.
+	 * @param date of "yyyy-MM-dd" format
+	 * @return stream of the raw file content, to be closed by the caller
+	 * @throws java.io.FileNotFoundException if no file is available for the date
+	 * @throws IOException if the file cannot be read
+	 */
+	InputStream open(String date) throws IOException;
+
+	/***
+	 * Returns the modification time of the daily file of a given date, used to detect files changed since they were loaded.
+	 * @param date of "yyyy-MM-dd" format
+	 * @return modification time in milliseconds since the epoch, 0 if unknown or if no file is available for the date
+	 */
+	long lastModified(String date);
+
+	/***
+	 * Returns the daily file of a given date when the repository keeps daily files uncompressed on disk, so that it can be read at an offset.
+	 * @param date of "yyyy-MM-dd" format
+	 * @return the daily file of the date, which may not exist, or null if daily files are not kept on disk
+	 */
+	File getFile(String date);
+
+	/***
+	 * @return human readable location of the repository, as configured by fileRepository
+	 */
+	String getLocation();
+
+}
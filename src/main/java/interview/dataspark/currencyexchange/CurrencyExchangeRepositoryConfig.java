@@ -0,0 +1,41 @@
+package interview.dataspark.currencyexchange;
+
+import java.io.IOException;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+
+/***
+ * RepositoryConfig creates the repository of daily files located at fileRepository.
+ * fileRepository.type selects how the files are stored: "directory" (default), "zip" for a single zip archive, or "monthly" for a directory of per-month "yyyy-MM.gz" bundles.
+ * @author Kenny
+ *
+ */
+@Configuration
+public class CurrencyExchangeRepositoryConfig {
+
+	@Value("${fileRepository}")
+	private String fileRepository;
+
+	@Value("${fileRepository.type:directory}")
+	private String fileRepositoryType;
+
+	@Value("${fileRepository.cachedMonths:12}")
+	private int cachedMonths;
+
+	@Bean
+	public CurrencyExchangeRepository currencyExchangeRepository() throws IOException {
+		if ("zip".equals(fileRepositoryType)) {
+			return new ZipCurrencyExchangeRepository(fileRepository);
+		}
+		if ("monthly".equals(fileRepositoryType)) {
+			return new MonthlyBundleCurrencyExchangeRepository(fileRepository, cachedMonths);
+		}
+		if ("directory".equals(fileRepositoryType)) {
+			return new DirectoryCurrencyExchangeRepository(fileRepository);
+		}
+		throw new IllegalArgumentException("Unknown fileRepository.type - " + fileRepositoryType);
+	}
+
+}
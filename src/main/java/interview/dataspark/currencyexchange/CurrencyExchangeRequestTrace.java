@@ -0,0 +1,172 @@
+package interview.dataspark.currencyexchange;
+
+/***
+ * Phase timers and counters of the request being served by the current thread, reported in the Server-Timing header and the trace log.
+ * One instance is kept per thread and reset by CurrencyExchangeTimingFilter for every request, so timing a phase allocates nothing.
+ * Outside of a request (e.g. startup loading) the trace is inactive and every call is a no-op.
+ * Usage: long start = trace.begin(); ...; trace.end(Phase.STORE, start);
+ * @author Kenny
+ *
+ */
+public final class CurrencyExchangeRequestTrace {
+
+	/***
+	 * Timed phases, named as in the Server-Timing header. Phases may nest: file and parse happen within store, store within scan.
+	 */
+	public enum Phase {
+		CACHE("cache"), STORE("store"), FILE("file"), PARSE("parse"), SCAN("scan"), JSON("json");
+
+		private final String metricName;
+
+		Phase(String metricName) {
+			this.metricName = metricName;
+		}
+
+		public String getMetricName() {
+			return metricName;
+		}
+	}
+
+	private static final ThreadLocal<CurrencyExchangeRequestTrace> CURRENT = new ThreadLocal<CurrencyExchangeRequestTrace>() {
+		@Override
+		protected CurrencyExchangeRequestTrace initialValue() {
+			return new CurrencyExchangeRequestTrace();
+		}
+	};
+
+	private boolean active;
+	private boolean sampled;
+	private long startNanos;
+	private final long[] phaseNanos = new long[Phase.values().length];
+	private final int[] phaseCounts = new int[Phase.values().length];
+	private int daysScanned;
+	private int filesOpened;
+	private int linesParsed;
+	private int hotHits;
+	private int coldHits;
+
+	private CurrencyExchangeRequestTrace() {
+	}
+
+	/***
+	 * @return trace of the current thread, inactive unless a request is being served
+	 */
+	public static CurrencyExchangeRequestTrace current() {
+		return CURRENT.get();
+	}
+
+	/***
+	 * Clears all timers and counters and activates the trace for a new request.
+	 * @param sampled whether the request is traced in full: its Server-Timing header then includes serialization, and it is written to the trace log
+	 */
+	public void start(boolean sampled) {
+		active = true;
+		this.sampled = sampled;
+		startNanos = System.nanoTime();
+		for (int i = 0; i < phaseNanos.length; i++) {
+			phaseNanos[i] = 0;
+			phaseCounts[i] = 0;
+		}
+		daysScanned = filesOpened = linesParsed = hotHits = coldHits = 0;
+	}
+
+	/***
+	 * Deactivates the trace once the request is served.
+	 */
+	public void stop() {
+		active = false;
+		sampled = false;
+	}
+
+	public boolean isActive() {
+		return active;
+	}
+
+	public boolean isSampled() {
+		return sampled;
+	}
+
+	/***
+	 * @return start time of a phase to be passed to {@link #end(Phase, long)}, 0 if the trace is inactive
+	 */
+	public long begin() {
+		return active ? System.nanoTime() : 0;
+	}
+
+	/***
+	 * Adds the time elapsed since start to a phase.
+	 * @param phase timed phase
+	 * @param start value returned by {@link #begin()}
+	 */
+	public void end(Phase phase, long start) {
+		if (active && start != 0) {
+			phaseNanos[phase.ordinal()] += System.nanoTime() - start;
+			phaseCounts[phase.ordinal()]++;
+		}
+	}
+
+	public void addDaysScanned(int days) {
+		if (active) daysScanned += days;
+	}
+	public void addFilesOpened(int files) {
+		if (active) filesOpened += files;
+	}
+	public void addLinesParsed(int lines) {
+		if (active) linesParsed += lines;
+	}
+	public void addHotHit() {
+		if (active) hotHits++;
+	}
+	public void addColdHit() {
+		if (active) coldHits++;
+	}
+
+	/***
+	 * @return time elapsed since the request started, in nanoseconds
+	 */
+	public long getElapsedNanos() {
+		return System.nanoTime() - startNanos;
+	}
+
+	/***
+	 * Formats the phases timed so far, and the total time, as a Server-Timing header value, e.g. "store;dur=0.42, json;dur=0.10, total;dur=0.61".
+	 * @return Server-Timing header value
+	 */
+	public String toServerTiming() {
+		StringBuilder builder = new StringBuilder(128);
+		for (Phase phase : Phase.values()) {
+			if (phaseCounts[phase.ordinal()] > 0) {
+				appendDuration(builder, phase.getMetricName(), phaseNanos[phase.ordinal()]).append(", ");
+			}
+		}
+		return appendDuration(builder, "total", getElapsedNanos()).toString();
+	}
+
+	/***
+	 * Formats timers and counters as space separated key=value pairs for the trace log, e.g. "totalMs=0.61 storeMs=0.42 ... days=1 files=0 lines=0 hot=1 cold=0".
+	 * @return structured trace
+	 */
+	public String toTraceLog() {
+		StringBuilder builder = new StringBuilder(256);
+		appendMillis(builder.append("totalMs="), getElapsedNanos());
+		for (Phase phase : Phase.values()) {
+			appendMillis(builder.append(' ').append(phase.getMetricName()).append("Ms="), phaseNanos[phase.ordinal()]);
+		}
+		return builder.append(" days=").append(daysScanned).append(" files=").append(filesOpened).append(" lines=").append(linesParsed)
+				.append(" hot=").append(hotHits).append(" cold=").append(coldHits).toString();
+	}
+
+	private static StringBuilder appendDuration(StringBuilder builder, String name, long nanos) {
+		return appendMillis(builder.append(name).append(";dur="), nanos);
+	}
+
+	private static StringBuilder appendMillis(StringBuilder builder, long nanos) {
+		long micros = nanos / 1000;
+		builder.append(micros / 1000).append('.');
+		long fraction = micros % 1000;
+		if (fraction < 100) builder.append('0');
+		if (fraction < 10) builder.append('0');
+		return builder.append(fraction);
+	}
+
+}
@@ -0,0 +1,229 @@
+package interview.dataspark.currencyexchange;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.zip.GZIPOutputStream;
+
+import javax.servlet.FilterChain;
+import javax.servlet.ServletException;
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletResponse;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.event.EventListener;
+import org.springframework.http.HttpHeaders;
+import org.springframework.stereotype.Component;
+import org.springframework.web.filter.OncePerRequestFilter;
+import org.springframework.web.util.ContentCachingResponseWrapper;
+
+/***
+ * Caches the encoded json body of successful GET("/ByDate"), GET("/ByDate/**"), GET("/ByCurrency"), GET("/ByCurrency/**") and GET("/ByCurrencies/**") responses from clients accepting json,
+ * keyed by path and the request parameters the endpoints read (asOf, referenceCurrency), so that other parameters or their order do not split entries.
+ * Bodies of at least gzipMinBytes are also kept gzipped, and served as such to clients accepting gzip.
+ * On a hit the bytes are written to the response as they are, so neither the controller nor Jackson run.
+ * Once the entries exceed maxBytes, the least recently used ones are evicted.
+ * Every entry is dropped when the rate store publishes a CurrencyExchangeDataChangedEvent. Enabled by responseCache.enabled.
+ * @author Kenny
+ *
+ */
+@Component
+public class CurrencyExchangeResponseCache extends OncePerRequestFilter {
+
+	@Value("${responseCache.enabled:false}")
+	private boolean enabled;
+
+	@Value("${responseCache.maxBytes:67108864}")
+	private long maxBytes;
+
+	@Value("${responseCache.gzipMinBytes:1024}")
+	private int gzipMinBytes;
+
+	//in access order, guarded by itself along with bytes and generation
+	private final LinkedHashMap<String, Entry> entries = new LinkedHashMap<String, Entry>(16, 0.75f, true);
+	private long bytes;
+	//bumped on every invalidation, responses built across an invalidation are not kept
+	private long generation;
+
+	private final AtomicLong hits = new AtomicLong();
+	private final AtomicLong misses = new AtomicLong();
+	private final AtomicLong invalidations = new AtomicLong();
+	private final AtomicLong evictions = new AtomicLong();
+
+	@Override
+	protected boolean shouldNotFilter(HttpServletRequest request) {
+		String path = request.getRequestURI().substring(request.getContextPath().length());
+		String accept = request.getHeader(HttpHeaders.ACCEPT);
+		boolean acceptsJson = accept == null || accept.contains("json") || accept.contains("*/*");
+		return !enabled || !acceptsJson || !"GET".equals(request.getMethod()) || !isCached(path);
+	}
+
+	private static boolean isCached(String path) {
+		return "/ByDate".equals(path) || "/ByCurrency".equals(path) || path.startsWith("/ByDate/") || path.startsWith("/ByCurrency/") || path.startsWith("/ByCurrencies/");
+	}
+
+	@Override
+	protected void doFilterInternal(HttpServletRequest request, HttpServletResponse response, FilterChain filterChain) throws ServletException, IOException {
+		CurrencyExchangeRequestTrace trace = CurrencyExchangeRequestTrace.current();
+		long start = trace.begin();
+		String key = getKey(request);
+		Entry entry;
+		long startGeneration;
+		synchronized (entries) {
+			entry = entries.get(key);
+			startGeneration = generation;
+		}
+		trace.end(CurrencyExchangeRequestTrace.Phase.CACHE, start);
+		if (entry != null) {
+			hits.incrementAndGet();
+			if (trace.isActive()) response.setHeader(CurrencyExchangeTimingFilter.SERVER_TIMING, trace.toServerTiming());
+			write(entry, request, response);
+			return;
+		}
+		misses.incrementAndGet();
+		ContentCachingResponseWrapper wrapper = new ContentCachingResponseWrapper(response);
+		filterChain.doFilter(request, wrapper);
+
+		String contentType = wrapper.getContentType();
+		if (wrapper.getStatus() != HttpServletResponse.SC_OK || contentType == null || !contentType.contains("json") || wrapper.getHeader(HttpHeaders.CONTENT_ENCODING) != null) {
+			wrapper.copyBodyToResponse();
+			return;
+		}
+		byte[] body = wrapper.getContentAsByteArray();
+		entry = new Entry(contentType, body, body.length >= gzipMinBytes ? gzip(body) : null);
+		wrapper.resetBuffer();
+		put(key, entry, startGeneration);
+		write(entry, request, response);
+	}
+
+	/***
+	 * Drops every cached response once ingested data replaces the data they were built from.
+	 * @param event published by the rate store
+	 */
+	@EventListener
+	public void onDataChanged(CurrencyExchangeDataChangedEvent event) {
+		invalidate();
+	}
+
+	/***
+	 * Drops every cached response.
+	 */
+	public void invalidate() {
+		synchronized (entries) {
+			generation++;
+			entries.clear();
+			bytes = 0;
+		}
+		invalidations.incrementAndGet();
+	}
+
+	/***
+	 * Returns size and hit counts of the response cache.
+	 * @return map of metric names to values
+	 */
+	public Map<String, Object> getMetrics() {
+		Map<String, Object> metrics = new LinkedHashMap<String, Object>();
+		metrics.put("responseCache.enabled", enabled);
+		synchronized (entries) {
+			metrics.put("responseCache.entries", entries.size());
+			metrics.put("responseCache.bytes", bytes);
+		}
+		metrics.put("responseCache.hits", hits.get());
+		metrics.put("responseCache.misses", misses.get());
+		metrics.put("responseCache.invalidations", invalidations.get());
+		metrics.put("responseCache.evictions", evictions.get());
+		return metrics;
+	}
+
+	/***
+	 * Keeps the entry unless an invalidation happened since the response was built, evicting the least recently used entries beyond maxBytes.
+	 * Entries larger than maxBytes on their own are not kept.
+	 */
+	private void put(String key, Entry entry, long startGeneration) {
+		if (entry.size() > maxBytes) return;
+		synchronized (entries) {
+			if (generation != startGeneration) return;
+			Entry previous = entries.put(key, entry);
+			bytes += entry.size() - (previous == null ? 0 : previous.size());
+			Iterator<Entry> eldest = entries.values().iterator();
+			while (bytes > maxBytes) {
+				bytes -= eldest.next().size();
+				eldest.remove();
+				evictions.incrementAndGet();
+			}
+		}
+	}
+
+	private static String getKey(HttpServletRequest request) {
+		String path = request.getRequestURI().substring(request.getContextPath().length());
+		String asOf = request.getParameter("asOf");
+		String referenceCurrency = request.getParameter("referenceCurrency");
+		//as converted to boolean by Spring, any other value is rejected before reaching the cache
+		boolean asOfSet = asOf != null && ("true".equalsIgnoreCase(asOf) || "on".equalsIgnoreCase(asOf) || "yes".equalsIgnoreCase(asOf) || "1".equals(asOf));
+		return path + "?asOf=" + asOfSet + (referenceCurrency == null ? "" : "&referenceCurrency=" + referenceCurrency);
+	}
+
+	private static void write(Entry entry, HttpServletRequest request, HttpServletResponse response) throws IOException {
+		String acceptEncoding = request.getHeader(HttpHeaders.ACCEPT_ENCODING);
+		boolean gzip = entry.gzipped != null && acceptEncoding != null && acceptEncoding.contains("gzip");
+		byte[] body = gzip ? entry.gzipped : entry.body;
+		response.setContentType(entry.contentType);
+		response.setHeader(HttpHeaders.VARY, HttpHeaders.ACCEPT_ENCODING);
+		if (gzip) response.setHeader(HttpHeaders.CONTENT_ENCODING, "gzip");
+		response.setContentLength(body.length);
+		response.getOutputStream().write(body);
+	}
+
+	private static byte[] gzip(byte[] body) throws IOException {
+		ByteArrayOutputStream out = new ByteArrayOutputStream(body.length / 4 + 64);
+		GZIPOutputStream gzip = new GZIPOutputStream(out);
+		gzip.write(body);
+		gzip.close();
+		return out.toByteArray();
+	}
+
+	public boolean isEnabled() {
+		return enabled;
+	}
+
+	public void setEnabled(boolean enabled) {
+		this.enabled = enabled;
+	}
+
+	public long getMaxBytes() {
+		return maxBytes;
+	}
+
+	public void setMaxBytes(long maxBytes) {
+		this.maxBytes = maxBytes;
+	}
+
+	public int getGzipMinBytes() {
+		return gzipMinBytes;
+	}
+
+	public void setGzipMinBytes(int gzipMinBytes) {
+		this.gzipMinBytes = gzipMinBytes;
+	}
+
+	private static class Entry {
+
+		private final String contentType;
+		private final byte[] body;
+		private final byte[] gzipped;
+
+		private Entry(String contentType, byte[] body, byte[] gzipped) {
+			this.contentType = contentType;
+			this.body = body;
+			this.gzipped = gzipped;
+		}
+
+		private long size() {
+			return body.length + (gzipped == null ? 0 : gzipped.length);
+		}
+	}
+
+}
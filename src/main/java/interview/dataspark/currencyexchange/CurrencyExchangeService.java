@@ -1,17 +1,20 @@
 package interview.dataspark.currencyexchange;
 
-import java.io.BufferedReader;
-import java.io.File;
-import java.io.FileNotFoundException;
-import java.io.FileReader;
 import java.io.IOException;
 import java.time.LocalDate;
 import java.time.format.DateTimeFormatter;
 import java.time.format.DateTimeFormatterBuilder;
 import java.time.format.DateTimeParseException;
 import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.HashSet;
 import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeMap;
 
+import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.beans.factory.annotation.Value;
 import org.springframework.stereotype.Service;
 
@@ -21,18 +24,41 @@ public class CurrencyExchangeService {
 	@Value("${fileRepository}")
 	private String fileRepository;
 	
+	@Autowired
+	private CurrencyExchangeRepository repository;
+	
+	@Autowired
+	private CurrencyExchangeRateStore rateStore;
+	
+	@Autowired
+	private CurrencyExchangeOffsetIndex offsetIndex;
+	
+	@Autowired
+	private CurrencyExchangeStartupLoader startupLoader;
+	
+	@Autowired
+	private CurrencyExchangeExporter exporter;
+	
+	@Autowired
+	private List<CurrencyExchangeBulkhead> bulkheads;
+	
+	@Autowired
+	private CurrencyExchangeResponseCache responseCache;
+	
 	/***
 	 * Lists out all files available in the data repository.
 	 * @return List of strings of format "yyyy-MM-dd.txt" to be parsed in the page as json message
 	 */
 	public List<Object> getAllDates() {
 		List<Object> list = new ArrayList<Object>();
-		File[] files = new File(getFileRepository()).listFiles();
-		for (File file : files) {
-			String fileName = file.getName();
-			if(file.isFile() && !list.contains(fileName)) {
-				list.add(fileName);
+		try {
+			for (String fileName : repository.getFileNames()) {
+				if(!list.contains(fileName)) {
+					list.add(fileName);
+				}
 			}
+		} catch (IOException e) {
+			//e.printStackTrace();
 		}
 		if (list.isEmpty()) list.add("No data available yet.");
 		return list;
@@ -43,27 +69,18 @@ public class CurrencyExchangeService {
 	 * @param date of "yyyy-MM-dd" format
 	 * @return If date is valid and data is available, the method returns a list of objects(date, currencyOfInterest, referenceCurrency, exchangeRate) to be parsed as json message list. Otherwise return error message.
 	 */
-	public List<Object> getRateByDate(String date) {		
+	public List<Object> getRateByDate(String date) {
+		return getRateByDate(rateStore.snapshot(), date);
+	}
+
+	private List<Object> getRateByDate(CurrencyExchangeRateStore.Snapshot snapshot, String date) {
 		List<Object> list = new ArrayList<Object>();
-		try {
-			FileReader fileReader = new FileReader(getFileRepository() + "/" + date + ".txt");
-            BufferedReader bufferedReader = new BufferedReader(fileReader);
-            String line = "";
-            while ((line = bufferedReader.readLine()) != null) {
-            	String[] items = line.split(" ");
-            	if (items.length == 7) {
-                	list.add(new CurrencyExchangeModel(date, items[1], items[6], Double.parseDouble(items[4])/Double.parseDouble(items[0])));
-            	}
-            }
-            bufferedReader.close();
-            fileReader.close();
-		} catch (FileNotFoundException e) {
-			//e.printStackTrace();
-		} catch (NumberFormatException e) {
-			//e.printStackTrace();
-		} catch (IOException e) {
-			//e.printStackTrace();
-		}		
+		CurrencyExchangeDay day = snapshot.getRates(date);
+		if (day != null) {
+			for (int i = 0; i < day.size(); i++) {
+				list.add(day.toModel(i));
+			}
+		}
 		if (list.isEmpty()) list.add("No data available for specified date - " + date);
 		return list;
 	}
@@ -75,83 +92,102 @@ public class CurrencyExchangeService {
 	 * @return If date, currencyOfInterest is valid and data is available, the method returns an object(date, currencyOfInterest, referenceCurrency, exchangeRate) to be parsed as json message. Otherwise return error message.
 	 */
 	public List<Object> getSpecificRateByDate(String date, String currencyOfInterest) {
+		return getSpecificRateByDate(rateStore.snapshot(), date, currencyOfInterest);
+	}
+
+	private List<Object> getSpecificRateByDate(CurrencyExchangeRateStore.Snapshot snapshot, String date, String currencyOfInterest) {
 		List<Object> list = new ArrayList<Object>();
-		try {
-			FileReader fileReader = new FileReader(getFileRepository() + "/" + date + ".txt");
-            BufferedReader bufferedReader = new BufferedReader(fileReader);
-            String line = "";
-            while ((line = bufferedReader.readLine()) != null) {
-            	String[] items = line.split(" ");
-            	if (items.length==7 && items[1].equals(currencyOfInterest)) {
-                	list.add(new CurrencyExchangeModel(date, items[1], items[6], Double.parseDouble(items[4])/Double.parseDouble(items[0])));
-            	}
-            }
-            bufferedReader.close();
-            fileReader.close();
-		} catch (FileNotFoundException e) {
-			//e.printStackTrace();
-		} catch (NumberFormatException e) {
-			//e.printStackTrace();
-		} catch (IOException e) {
-			//e.printStackTrace();
-		}		
+		CurrencyExchangeDay day = null;
+		//a date not loaded yet is looked up through the offset index, reading the lines of the currency only
+		if (snapshot.contains(date) && !snapshot.isLoaded(date)) day = offsetIndex.getRates(date, currencyOfInterest, snapshot.getLastModified(date));
+		if (day == null) day = snapshot.getRates(date);
+		if (day != null) {
+			for (int i = 0; i < day.size(); i++) {
+				if (day.getCurrencyOfInterest(i).equals(currencyOfInterest)) {
+					list.add(day.toModel(i));
+				}
+			}
+		}
 		if (list.isEmpty()) list.add("No data available for specified date - " + date + " and specified currency - " + currencyOfInterest);
 		return list;
 	}
 
 	/***
-	 * Returns exchange rates for a specified currency for a given date using a specified reference currency (non-USD included).
+	 * Returns exchange rates for a specified currency for a given date using a specified reference currency (non-USD included), see CurrencyExchangeRateLookup for the rules.
 	 * @param date of "yyyy-MM-dd" format
 	 * @param currencyOfInterest of "XXX" format - case sensitive
 	 * @param referenceCurrency of "XXX" format - case sensitive
 	 * @return If date, currencyOfInterest,referenceCurrency is valid and data is available, the method returns an object(date, currencyOfInterest, referenceCurrency, exchangeRate) to be parsed as json message. Otherwise return error message. Error message to be returned if currencyOfInterest==referenceCurrency.
 	 */
 	public List<Object> getSpecificRateByDate(String date, String currencyOfInterest, String referenceCurrency) {
+		return getSpecificRateByDate(rateStore.snapshot(), date, currencyOfInterest, referenceCurrency);
+	}
+
+	private List<Object> getSpecificRateByDate(CurrencyExchangeRateStore.Snapshot snapshot, String date, String currencyOfInterest, String referenceCurrency) {
 		List<Object> list = new ArrayList<Object>();
-		CurrencyExchangeModel modelOfInterest = null;
-		CurrencyExchangeModel referenceModel = null;
-		
-		try {
-			FileReader fileReader = new FileReader(getFileRepository() + "/" + date + ".txt");            
-			BufferedReader bufferedReader = new BufferedReader(fileReader);
-            String line = "";
-            while ((line = bufferedReader.readLine()) != null) {
-            	String[] items = line.split(" ");
-            	if (items.length==7) {
-            		if(items[1].equals(currencyOfInterest)) {
-            			modelOfInterest = new CurrencyExchangeModel(date, items[1], items[6], Double.parseDouble(items[4])/Double.parseDouble(items[0]));
-            			if(items[6].equals(referenceCurrency)) {
-            				list.add(modelOfInterest);
-            				break;
-            			}
-            		}
-            		if(items[1].equals(referenceCurrency)) {
-            			if(items[6].equals(currencyOfInterest)) {
-            				list.add(new CurrencyExchangeModel(date,items[6], items[1], Math.round((1.0/Double.parseDouble(items[4]))*100.0)/100.0));
-            				break;
-            			}
-            			referenceModel = new CurrencyExchangeModel(date, items[1], items[6], Double.parseDouble(items[4])/Double.parseDouble(items[0]));
-            		}
-            	}
-            }
-            bufferedReader.close();
-            fileReader.close();
-            if(modelOfInterest != null && referenceModel != null) {
-            	list.add(new CurrencyExchangeModel(date, currencyOfInterest, referenceCurrency,Math.round(modelOfInterest.getExchangeRate()/referenceModel.getExchangeRate()*100.0)/100.0));
-            }
-		} catch (FileNotFoundException e) {
-			//e.printStackTrace();
-		} catch (NumberFormatException e) {
-			//e.printStackTrace();
-		} catch (IOException e) {
-			//e.printStackTrace();
+		CurrencyExchangeDay day = snapshot.getRates(date);
+		if (day != null) {
+			double rate = new CurrencyExchangeRateLookup(day).getRate(currencyOfInterest, referenceCurrency);
+			if (!Double.isNaN(rate)) list.add(new CurrencyExchangeModel(date, currencyOfInterest, referenceCurrency, rate));
 		}
-		finally {
-			if (list.isEmpty()) list.add("No data available for specified date - " + date + " and specified currency - " + currencyOfInterest + " and reference currency - " + referenceCurrency);
+		if (list.isEmpty()) list.add("No data available for specified date - " + date + " and specified currency - " + currencyOfInterest + " and reference currency - " + referenceCurrency);
+		return list;
+	}
+
+	/***
+	 * Returns exchange rates for all currencies as of a given date, i.e. for the latest available date on or before it.
+	 * @param date of "yyyy-MM-dd" format
+	 * @return Same as getRateByDate for the resolved date, with requestedDate set on every object. Error message if no data is available on or before the date.
+	 */
+	public List<Object> getRateByDateAsOf(String date) {
+		CurrencyExchangeRateStore.Snapshot snapshot = rateStore.snapshot();
+		String availableDate = snapshot.floorDate(date);
+		if (availableDate == null) return noDataAsOf(date);
+		return asOf(getRateByDate(snapshot, availableDate), date);
+	}
+
+	/***
+	 * Returns exchange rates for a specified currency as of a given date, i.e. for the latest available date on or before it.
+	 * @param date of "yyyy-MM-dd" format
+	 * @param currencyOfInterest of "XXX" format - case sensitive
+	 * @return Same as getSpecificRateByDate for the resolved date, with requestedDate set on every object. Error message if no data is available on or before the date.
+	 */
+	public List<Object> getSpecificRateByDateAsOf(String date, String currencyOfInterest) {
+		CurrencyExchangeRateStore.Snapshot snapshot = rateStore.snapshot();
+		String availableDate = snapshot.floorDate(date);
+		if (availableDate == null) return noDataAsOf(date);
+		return asOf(getSpecificRateByDate(snapshot, availableDate, currencyOfInterest), date);
+	}
+
+	/***
+	 * Returns exchange rates for a specified currency using a specified reference currency as of a given date, i.e. for the latest available date on or before it.
+	 * @param date of "yyyy-MM-dd" format
+	 * @param currencyOfInterest of "XXX" format - case sensitive
+	 * @param referenceCurrency of "XXX" format - case sensitive
+	 * @return Same as getSpecificRateByDate for the resolved date, with requestedDate set on every object. Error message if no data is available on or before the date.
+	 */
+	public List<Object> getSpecificRateByDateAsOf(String date, String currencyOfInterest, String referenceCurrency) {
+		CurrencyExchangeRateStore.Snapshot snapshot = rateStore.snapshot();
+		String availableDate = snapshot.floorDate(date);
+		if (availableDate == null) return noDataAsOf(date);
+		return asOf(getSpecificRateByDate(snapshot, availableDate, currencyOfInterest, referenceCurrency), date);
+	}
+
+	private List<Object> asOf(List<Object> list, String requestedDate) {
+		for (Object item : list) {
+			if (item instanceof CurrencyExchangeModel) {
+				((CurrencyExchangeModel) item).setRequestedDate(requestedDate);
+			}
 		}
 		return list;
 	}
 
+	private List<Object> noDataAsOf(String date) {
+		List<Object> list = new ArrayList<Object>();
+		list.add("No data available on or before specified date - " + date);
+		return list;
+	}
+
 	/***
 	 * Provide static instructions on accessing exchange rates for specified currencies and date ranges.
 	 * @return Static instructions on accessing exchange rates for specified currencies and date ranges.
@@ -193,10 +229,18 @@ public class CurrencyExchangeService {
 				startDate = date;
 			}
 			date = startDate;
+			//one snapshot for the whole range, so that an ingestion during the scan is either fully seen or not at all
+			CurrencyExchangeRateStore.Snapshot snapshot = rateStore.snapshot();
+			CurrencyExchangeRequestTrace trace = CurrencyExchangeRequestTrace.current();
+			long scanStart = trace.begin();
+			int days = 0;
 			while (date.isEqual(endDate) || date.isBefore(endDate)) {
-				list.addAll(getSpecificRateByDate(date.format(formatter), currencyOfInterest));
+				list.addAll(getSpecificRateByDate(snapshot, date.format(formatter), currencyOfInterest));
 				date = date.plusDays(1);
+				days++;
 			} 
+			trace.addDaysScanned(days);
+			trace.end(CurrencyExchangeRequestTrace.Phase.SCAN, scanStart);
 		} catch (DateTimeParseException e) {
 			// TODO: handle exception
 		}
@@ -204,15 +248,137 @@ public class CurrencyExchangeService {
 		return list;
 	}
 
+	/***
+	 * Returns exchange rates for several currencies over a date range as a single matrix of dates by currencies, see CurrencyExchangeMatrix.
+	 * The available dates of the range are read once each, and every requested currency is extracted from a day in a single pass over its records.
+	 * A cell holds the same rate as getSpecificRateByDate for its date, currency and reference currency. Without a reference currency, each column keeps to
+	 * the reference currency recorded most often for its currency over the range (the first in alphabetical order on a tie).
+	 * @param currenciesOfInterest comma separated list of "XXX" format - case sensitive
+	 * @param start of "yyyy-MM-dd" format
+	 * @param end of "yyyy-MM-dd" format
+	 * @param referenceCurrency of "XXX" format - case sensitive, or null to return rates as recorded
+	 * @return If currencies, dates are valid and data is available for at least one date, the method returns a matrix to be parsed as json message. Otherwise return error message, telling invalid dates apart from missing data.
+	 */
+	public List<Object> getRatesByCurrencies(String currenciesOfInterest, String start, String end, String referenceCurrency) {
+		List<Object> list = new ArrayList<Object>();
+		List<String> currencies = new ArrayList<String>();
+		for (String currency : currenciesOfInterest.split(",")) {
+			if (!currency.trim().isEmpty() && !currencies.contains(currency.trim())) currencies.add(currency.trim());
+		}
+		if (referenceCurrency != null && referenceCurrency.isEmpty()) referenceCurrency = null;
+
+		try {
+			DateTimeFormatter formatter = new DateTimeFormatterBuilder().appendPattern("yyyy-MM-dd").parseStrict().toFormatter();
+			LocalDate startDate = LocalDate.parse(start, formatter);
+			LocalDate endDate = LocalDate.parse(end, formatter);
+			if (startDate.isAfter(endDate)) {
+				LocalDate date = endDate;
+				endDate = startDate;
+				startDate = date;
+			}
+			CurrencyExchangeRateStore.Snapshot snapshot = rateStore.snapshot();
+			CurrencyExchangeRequestTrace trace = CurrencyExchangeRequestTrace.current();
+			long scanStart = trace.begin();
+			List<CurrencyExchangeDay> days = new ArrayList<CurrencyExchangeDay>();
+			for (String date : snapshot.getDates(startDate.format(formatter), endDate.format(formatter))) {
+				CurrencyExchangeDay day = snapshot.getRates(date);
+				if (day != null) days.add(day);
+			}
+			String[] references = referenceCurrency == null ? getMostRecordedReferences(days, currencies) : null;
+			//one column per currency, NaN where no rate is available, holding the dates with a rate for at least one currency
+			double[][] rates = new double[currencies.size()][days.size()];
+			List<String> dates = new ArrayList<String>();
+			for (CurrencyExchangeDay day : days) {
+				CurrencyExchangeRateLookup lookup = new CurrencyExchangeRateLookup(day);
+				boolean found = false;
+				for (int j = 0; j < rates.length; j++) {
+					String reference = referenceCurrency == null ? references[j] : referenceCurrency;
+					rates[j][dates.size()] = reference == null ? Double.NaN : lookup.getRate(currencies.get(j), reference);
+					found |= !Double.isNaN(rates[j][dates.size()]);
+				}
+				if (found) dates.add(day.getDate());
+			}
+			for (int j = 0; j < rates.length; j++) {
+				rates[j] = Arrays.copyOf(rates[j], dates.size());
+			}
+			trace.addDaysScanned(days.size());
+			trace.end(CurrencyExchangeRequestTrace.Phase.SCAN, scanStart);
+
+			if (!dates.isEmpty()) {
+				list.add(new CurrencyExchangeMatrix(startDate.format(formatter), endDate.format(formatter), referenceCurrency, currencies,
+						references == null ? null : Arrays.asList(references), dates, rates));
+			}
+		} catch (DateTimeParseException e) {
+			list.add("Invalid dates - " + start + ", " + end + ", expected yyyy-MM-dd format");
+			return list;
+		}
+		if (list.isEmpty()) list.add("No data available for specified dates - " + start + ", " + end + " and specified currencies - " + currenciesOfInterest
+				+ (referenceCurrency == null ? "" : " and reference currency - " + referenceCurrency));
+		return list;
+	}
+
+	/***
+	 * Reference currency of each column: the one recorded on the most days for its currency, the first in alphabetical order on a tie.
+	 * @return reference currency of each column, null for a currency never recorded
+	 */
+	private String[] getMostRecordedReferences(List<CurrencyExchangeDay> days, List<String> currencies) {
+		Map<String, Integer> columns = new HashMap<String, Integer>();
+		List<Map<String, Integer>> counts = new ArrayList<Map<String, Integer>>();
+		for (int j = 0; j < currencies.size(); j++) {
+			columns.put(currencies.get(j), j);
+			counts.add(new TreeMap<String, Integer>());
+		}
+		for (CurrencyExchangeDay day : days) {
+			Set<String> counted = new HashSet<String>();
+			for (int i = 0; i < day.size(); i++) {
+				Integer column = columns.get(day.getCurrencyOfInterest(i));
+				if (column == null || !counted.add(day.getCurrencyOfInterest(i) + day.getReferenceCurrency(i))) continue;
+				Integer count = counts.get(column).get(day.getReferenceCurrency(i));
+				counts.get(column).put(day.getReferenceCurrency(i), count == null ? 1 : count + 1);
+			}
+		}
+		String[] references = new String[columns.size()];
+		for (int j = 0; j < references.length; j++) {
+			int max = 0;
+			for (Map.Entry<String, Integer> count : counts.get(j).entrySet()) {
+				if (count.getValue() > max) {
+					max = count.getValue();
+					references[j] = count.getKey();
+				}
+			}
+		}
+		return references;
+	}
+
 	public List<Object> loadIntroPageInfo() {
 		List<Object> introPageInfo = new ArrayList<Object>();
 		introPageInfo.add(getFileRepository());
 		introPageInfo.add("::::/ByDate/yyyy-MM-dd::::");
 		introPageInfo.add("::::/ByDate/yyyy-MM-dd/currencyOfInterest/referenceCurrency::::");
+		introPageInfo.add("::::/ByDate/yyyy-MM-dd?asOf=true::::");
 		introPageInfo.add("::::/ByCurrency/currencyOfInterest/yyyy-MM-dd/yyyy-MM-dd::::");
+		introPageInfo.add("::::/ByCurrencies/currencyOfInterest,currencyOfInterest/yyyy-MM-dd/yyyy-MM-dd?referenceCurrency=referenceCurrency::::");
+		introPageInfo.add("::::/Export/yyyy-MM-dd/yyyy-MM-dd?format=raw|framed|normalized::::");
 		return introPageInfo;
 	}
 
+	/***
+	 * Returns size and hit counts of each tier of the rate store and of the response cache, the I/O of the offset index, the report of the startup load, the volume of exports, and rejections and queue wait time of each bulkhead.
+	 * @return List holding maps of metric names to values, to be parsed as json message
+	 */
+	public List<Object> getMetrics() {
+		List<Object> list = new ArrayList<Object>();
+		list.add(rateStore.getMetrics());
+		list.add(offsetIndex.getMetrics());
+		list.add(responseCache.getMetrics());
+		list.add(startupLoader.getReport());
+		list.add(exporter.getMetrics());
+		for (CurrencyExchangeBulkhead bulkhead : bulkheads) {
+			list.add(bulkhead.getMetrics());
+		}
+		return list;
+	}
+
 	public String getFileRepository() {
 		return fileRepository;
 	}
@@ -221,4 +387,60 @@ public class CurrencyExchangeService {
 		this.fileRepository = fileRepository;
 	}
 
+	public CurrencyExchangeRepository getRepository() {
+		return repository;
+	}
+
+	public void setRepository(CurrencyExchangeRepository repository) {
+		this.repository = repository;
+	}
+
+	public CurrencyExchangeOffsetIndex getOffsetIndex() {
+		return offsetIndex;
+	}
+
+	public void setOffsetIndex(CurrencyExchangeOffsetIndex offsetIndex) {
+		this.offsetIndex = offsetIndex;
+	}
+
+	public CurrencyExchangeStartupLoader getStartupLoader() {
+		return startupLoader;
+	}
+
+	public void setStartupLoader(CurrencyExchangeStartupLoader startupLoader) {
+		this.startupLoader = startupLoader;
+	}
+
+	public CurrencyExchangeExporter getExporter() {
+		return exporter;
+	}
+
+	public void setExporter(CurrencyExchangeExporter exporter) {
+		this.exporter = exporter;
+	}
+
+	public List<CurrencyExchangeBulkhead> getBulkheads() {
+		return bulkheads;
+	}
+
+	public void setBulkheads(List<CurrencyExchangeBulkhead> bulkheads) {
+		this.bulkheads = bulkheads;
+	}
+
+	public CurrencyExchangeResponseCache getResponseCache() {
+		return responseCache;
+	}
+
+	public void setResponseCache(CurrencyExchangeResponseCache responseCache) {
+		this.responseCache = responseCache;
+	}
+
+	public CurrencyExchangeRateStore getRateStore() {
+		return rateStore;
+	}
+
+	public void setRateStore(CurrencyExchangeRateStore rateStore) {
+		this.rateStore = rateStore;
+	}
+
 }
@@ -0,0 +1,221 @@
+package interview.dataspark.currencyexchange;
+
+import java.io.FilterInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.lang.management.ManagementFactory;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.CommandLineRunner;
+import org.springframework.stereotype.Component;
+
+/***
+ * Loads the whole repository into the rate store when CurrencyExchangeMainApp starts, instead of on first access of each date.
+ * The sorted dates are split into contiguous partitions, one per worker of a bounded pool. Each worker parses its partition into
+ * its own list, and the lists are merged into the store by the starting thread once all workers are done.
+ * A report of the load (files/sec, bytes/sec, parse errors, time to ready) is logged and kept for GET("/Metrics").
+ * @author Kenny
+ *
+ */
+@Component
+public class CurrencyExchangeStartupLoader implements CommandLineRunner {
+
+	private static final Logger LOGGER = LoggerFactory.getLogger(CurrencyExchangeStartupLoader.class);
+
+	@Autowired
+	private CurrencyExchangeRepository repository;
+
+	@Autowired
+	private CurrencyExchangeRateStore rateStore;
+
+	@Value("${startupLoad.enabled:true}")
+	private boolean enabled;
+
+	@Value("${startupLoad.threads:0}")
+	private int threads;
+
+	private volatile Map<String, Object> report = new LinkedHashMap<String, Object>();
+
+	@Override
+	public void run(String... args) throws Exception {
+		if (enabled) load();
+	}
+
+	/***
+	 * Loads every available date into the rate store and logs the startup report.
+	 * @return the startup report
+	 * @throws InterruptedException if interrupted while waiting for the workers
+	 */
+	public Map<String, Object> load() throws InterruptedException {
+		long start = System.nanoTime();
+		List<String> dates = rateStore.getDates();
+		int workers = Math.max(1, Math.min(dates.size(), threads > 0 ? threads : Runtime.getRuntime().availableProcessors()));
+
+		List<Partition> partitions = new ArrayList<Partition>();
+		int partitionSize = (dates.size() + workers - 1) / workers;
+		for (int from = 0; from < dates.size(); from += partitionSize) {
+			partitions.add(new Partition(dates.subList(from, Math.min(dates.size(), from + partitionSize))));
+		}
+
+		ExecutorService executor = Executors.newFixedThreadPool(workers, new LoaderThreadFactory());
+		try {
+			for (Future<Partition> future : executor.invokeAll(partitions)) {
+				future.get();
+			}
+		} catch (ExecutionException e) {
+			//workers catch their own I/O errors, anything else is a bug
+			throw new IllegalStateException(e.getCause());
+		} finally {
+			executor.shutdown();
+		}
+
+		long files = 0, bytes = 0, malformedLines = 0, failedFiles = 0;
+		for (Partition partition : partitions) {
+			rateStore.putAll(partition.days);
+			files += partition.days.size();
+			bytes += partition.bytes;
+			malformedLines += partition.malformedLines;
+			failedFiles += partition.failedFiles;
+		}
+		long elapsedMillis = Math.max(1, (System.nanoTime() - start) / 1000000);
+		long readyMillis = ManagementFactory.getRuntimeMXBean().getUptime();
+
+		Map<String, Object> report = new LinkedHashMap<String, Object>();
+		report.put("startupLoad.threads", workers);
+		report.put("startupLoad.files", files);
+		report.put("startupLoad.bytes", bytes);
+		report.put("startupLoad.failedFiles", failedFiles);
+		report.put("startupLoad.parseErrors", malformedLines);
+		report.put("startupLoad.loadMillis", elapsedMillis);
+		report.put("startupLoad.filesPerSecond", files * 1000 / elapsedMillis);
+		report.put("startupLoad.bytesPerSecond", bytes * 1000 / elapsedMillis);
+		report.put("startupLoad.readyMillis", readyMillis);
+		this.report = report;
+		LOGGER.info("Loaded {} files ({} bytes) from {} with {} threads in {} ms: {} files/sec, {} bytes/sec, {} parse errors, {} failed files, ready {} ms after JVM start",
+				files, bytes, repository.getLocation(), workers, elapsedMillis, report.get("startupLoad.filesPerSecond"), report.get("startupLoad.bytesPerSecond"), malformedLines, failedFiles, readyMillis);
+		return report;
+	}
+
+	/***
+	 * @return report of the last startup load, empty if none was run
+	 */
+	public Map<String, Object> getReport() {
+		return report;
+	}
+
+	public CurrencyExchangeRepository getRepository() {
+		return repository;
+	}
+
+	public void setRepository(CurrencyExchangeRepository repository) {
+		this.repository = repository;
+	}
+
+	public CurrencyExchangeRateStore getRateStore() {
+		return rateStore;
+	}
+
+	public void setRateStore(CurrencyExchangeRateStore rateStore) {
+		this.rateStore = rateStore;
+	}
+
+	public boolean isEnabled() {
+		return enabled;
+	}
+
+	public void setEnabled(boolean enabled) {
+		this.enabled = enabled;
+	}
+
+	public int getThreads() {
+		return threads;
+	}
+
+	public void setThreads(int threads) {
+		this.threads = threads;
+	}
+
+	/***
+	 * Dates parsed by one worker, along with its own counters. Only touched by its worker until the pool is done.
+	 */
+	private class Partition implements Callable<Partition> {
+
+		private final List<String> dates;
+		private final List<CurrencyExchangeDay> days;
+		private long bytes;
+		private long malformedLines;
+		private long failedFiles;
+
+		private Partition(List<String> dates) {
+			this.dates = dates;
+			this.days = new ArrayList<CurrencyExchangeDay>(dates.size());
+		}
+
+		@Override
+		public Partition call() {
+			for (String date : dates) {
+				try {
+					CountingInputStream in = new CountingInputStream(repository.open(date));
+					CurrencyExchangeDay day = CurrencyExchangeDay.read(date, in);
+					days.add(day);
+					bytes += in.count;
+					malformedLines += day.getMalformedLines();
+				} catch (IOException e) {
+					failedFiles++;
+					LOGGER.warn("Could not load {}.txt - {}", date, e.getMessage());
+				}
+			}
+			return this;
+		}
+	}
+
+	private static class CountingInputStream extends FilterInputStream {
+
+		private long count;
+
+		private CountingInputStream(InputStream in) {
+			super(in);
+		}
+
+		@Override
+		public int read() throws IOException {
+			int b = super.read();
+			if (b != -1) count++;
+			return b;
+		}
+
+		@Override
+		public int read(byte[] b, int off, int len) throws IOException {
+			int read = super.read(b, off, len);
+			if (read > 0) count += read;
+			return read;
+		}
+	}
+
+	private static class LoaderThreadFactory implements ThreadFactory {
+
+		private final AtomicInteger count = new AtomicInteger();
+
+		@Override
+		public Thread newThread(Runnable runnable) {
+			Thread thread = new Thread(runnable, "startup-loader-" + count.incrementAndGet());
+			thread.setDaemon(true);
+			return thread;
+		}
+	}
+
+}
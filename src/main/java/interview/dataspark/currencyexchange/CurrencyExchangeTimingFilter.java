@@ -0,0 +1,91 @@
+package interview.dataspark.currencyexchange;
+
+import java.io.IOException;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+
+import javax.servlet.FilterChain;
+import javax.servlet.ServletException;
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletResponse;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.core.Ordered;
+import org.springframework.core.annotation.Order;
+import org.springframework.stereotype.Component;
+import org.springframework.web.filter.OncePerRequestFilter;
+
+/***
+ * Starts the CurrencyExchangeRequestTrace of every request, ahead of the response cache, sampling a trace.sampleRate fraction of requests,
+ * and writes it to the trace log for sampled requests and for every request slower than trace.slowMillis.
+ * The Server-Timing header is normally set right before the body is written, by the json converter or the response cache;
+ * this filter only sets it for responses which are not committed yet, e.g. rejections.
+ * @author Kenny
+ *
+ */
+@Component
+@Order(Ordered.HIGHEST_PRECEDENCE + 100)
+public class CurrencyExchangeTimingFilter extends OncePerRequestFilter {
+
+	public static final String SERVER_TIMING = "Server-Timing";
+
+	private static final Logger LOGGER = LoggerFactory.getLogger(CurrencyExchangeTimingFilter.class);
+
+	@Value("${trace.enabled:true}")
+	private boolean enabled;
+
+	@Value("${trace.sampleRate:0.01}")
+	private double sampleRate;
+
+	@Value("${trace.slowMillis:500}")
+	private long slowMillis;
+
+	@Override
+	protected boolean shouldNotFilter(HttpServletRequest request) {
+		return !enabled;
+	}
+
+	@Override
+	protected void doFilterInternal(HttpServletRequest request, HttpServletResponse response, FilterChain filterChain) throws ServletException, IOException {
+		CurrencyExchangeRequestTrace trace = CurrencyExchangeRequestTrace.current();
+		trace.start(ThreadLocalRandom.current().nextDouble() < sampleRate);
+		try {
+			filterChain.doFilter(request, response);
+		} finally {
+			if (!response.isCommitted() && !response.containsHeader(SERVER_TIMING)) {
+				response.setHeader(SERVER_TIMING, trace.toServerTiming());
+			}
+			if (trace.isSampled() || trace.getElapsedNanos() >= TimeUnit.MILLISECONDS.toNanos(slowMillis)) {
+				LOGGER.info("trace method={} uri={} query={} status={} {}", request.getMethod(), request.getRequestURI(), request.getQueryString(), response.getStatus(), trace.toTraceLog());
+			}
+			trace.stop();
+		}
+	}
+
+	public boolean isEnabled() {
+		return enabled;
+	}
+
+	public void setEnabled(boolean enabled) {
+		this.enabled = enabled;
+	}
+
+	public double getSampleRate() {
+		return sampleRate;
+	}
+
+	public void setSampleRate(double sampleRate) {
+		this.sampleRate = sampleRate;
+	}
+
+	public long getSlowMillis() {
+		return slowMillis;
+	}
+
+	public void setSlowMillis(long slowMillis) {
+		this.slowMillis = slowMillis;
+	}
+
+}
@@ -0,0 +1,131 @@
+package interview.dataspark.currencyexchange;
+
+import javax.annotation.PostConstruct;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.http.converter.json.MappingJackson2HttpMessageConverter;
+import org.springframework.web.servlet.config.annotation.InterceptorRegistry;
+import org.springframework.web.servlet.config.annotation.WebMvcConfigurerAdapter;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+/***
+ * WebConfig registers one bulkhead per class of endpoints, so that slow range queries cannot starve point lookups of servlet threads.
+ * Limits are set by bulkhead.{range,fullDay,point,export}.{maxConcurrent,maxQueued,maxWaitMillis}.
+ * Queued requests hold a servlet thread as well, so the sum of maxConcurrent and maxQueued over all bulkheads must stay below server.tomcat.max-threads,
+ * leaving threads for the endpoints without a bulkhead; startup fails otherwise.
+ * Also registers the json converter timing serialization for the request trace.
+ * @author Kenny
+ *
+ */
+@Configuration
+public class CurrencyExchangeWebConfig extends WebMvcConfigurerAdapter {
+
+	@Value("${bulkhead.retryAfterSeconds:1}")
+	private int retryAfterSeconds;
+
+	@Value("${server.tomcat.max-threads:200}")
+	private int maxThreads;
+
+	@Value("${bulkhead.range.maxConcurrent:4}")
+	private int rangeMaxConcurrent;
+	@Value("${bulkhead.range.maxQueued:8}")
+	private int rangeMaxQueued;
+	@Value("${bulkhead.range.maxWaitMillis:1000}")
+	private long rangeMaxWaitMillis;
+
+	@Value("${bulkhead.fullDay.maxConcurrent:16}")
+	private int fullDayMaxConcurrent;
+	@Value("${bulkhead.fullDay.maxQueued:32}")
+	private int fullDayMaxQueued;
+	@Value("${bulkhead.fullDay.maxWaitMillis:500}")
+	private long fullDayMaxWaitMillis;
+
+	@Value("${bulkhead.point.maxConcurrent:40}")
+	private int pointMaxConcurrent;
+	@Value("${bulkhead.point.maxQueued:80}")
+	private int pointMaxQueued;
+	@Value("${bulkhead.point.maxWaitMillis:200}")
+	private long pointMaxWaitMillis;
+
+	@Value("${bulkhead.export.maxConcurrent:2}")
+	private int exportMaxConcurrent;
+	@Value("${bulkhead.export.maxQueued:2}")
+	private int exportMaxQueued;
+	@Value("${bulkhead.export.maxWaitMillis:1000}")
+	private long exportMaxWaitMillis;
+
+	/***
+	 * Checks that the bulkheads, queues included, cannot hold every servlet thread.
+	 * @throws IllegalStateException if the sum of maxConcurrent and maxQueued over all bulkheads is not below server.tomcat.max-threads
+	 */
+	@PostConstruct
+	public void checkLimits() {
+		int threads = rangeMaxConcurrent + rangeMaxQueued + fullDayMaxConcurrent + fullDayMaxQueued
+				+ pointMaxConcurrent + pointMaxQueued + exportMaxConcurrent + exportMaxQueued;
+		if (threads >= maxThreads) {
+			throw new IllegalStateException("Bulkheads may hold " + threads + " servlet threads, expected fewer than server.tomcat.max-threads - " + maxThreads);
+		}
+	}
+
+	/***
+	 * Multi-day lookups: GET("/ByCurrency/{currencyOfInterest}/{startDate}/{endDate}") and GET("/ByCurrencies/{currenciesOfInterest}/{startDate}/{endDate}").
+	 * @return bulkhead named "range"
+	 */
+	@Bean
+	public CurrencyExchangeBulkhead rangeBulkhead() {
+		return new CurrencyExchangeBulkhead("range", rangeMaxConcurrent, rangeMaxQueued, rangeMaxWaitMillis);
+	}
+
+	/***
+	 * All currencies of one date: GET("/ByDate/{date}").
+	 * @return bulkhead named "fullDay"
+	 */
+	@Bean
+	public CurrencyExchangeBulkhead fullDayBulkhead() {
+		return new CurrencyExchangeBulkhead("fullDay", fullDayMaxConcurrent, fullDayMaxQueued, fullDayMaxWaitMillis);
+	}
+
+	/***
+	 * One currency of one date: GET("/ByDate/{date}/{currencyOfInterest}"), GET("/ByDate/{date}/{currencyOfInterest}/{referenceCurrency}") and GET("/ByCurrency/{currencyOfInterest}/{date}").
+	 * @return bulkhead named "point"
+	 */
+	@Bean
+	public CurrencyExchangeBulkhead pointBulkhead() {
+		return new CurrencyExchangeBulkhead("point", pointMaxConcurrent, pointMaxQueued, pointMaxWaitMillis);
+	}
+
+	/***
+	 * Bulk exports: GET("/Export/{startDate}/{endDate}"), each one holding a servlet thread for as long as the transfer lasts.
+	 * @return bulkhead named "export"
+	 */
+	@Bean
+	public CurrencyExchangeBulkhead exportBulkhead() {
+		return new CurrencyExchangeBulkhead("export", exportMaxConcurrent, exportMaxQueued, exportMaxWaitMillis);
+	}
+
+	/***
+	 * Replaces the default json converter with one timing serialization for the request trace.
+	 * @param objectMapper configured by Spring Boot
+	 * @return json converter
+	 */
+	@Bean
+	public MappingJackson2HttpMessageConverter mappingJackson2HttpMessageConverter(ObjectMapper objectMapper) {
+		return new CurrencyExchangeJsonConverter(objectMapper);
+	}
+
+	@Override
+	public void addInterceptors(InterceptorRegistry registry) {
+		registry.addInterceptor(new CurrencyExchangeBulkheadInterceptor(rangeBulkhead(), retryAfterSeconds))
+			.addPathPatterns("/ByCurrency/*/*/*", "/ByCurrencies/*/*/*");
+		registry.addInterceptor(new CurrencyExchangeBulkheadInterceptor(fullDayBulkhead(), retryAfterSeconds))
+			.addPathPatterns("/ByDate/*");
+		registry.addInterceptor(new CurrencyExchangeBulkheadInterceptor(pointBulkhead(), retryAfterSeconds))
+			.addPathPatterns("/ByDate/*/*", "/ByDate/*/*/*", "/ByCurrency/*/*");
+		registry.addInterceptor(new CurrencyExchangeBulkheadInterceptor(exportBulkhead(), retryAfterSeconds))
+			.addPathPatterns("/Export/*/*");
+	}
+
+}
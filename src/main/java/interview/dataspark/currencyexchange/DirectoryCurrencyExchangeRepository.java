@@ -0,0 +1,55 @@
+package interview.dataspark.currencyexchange;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileNotFoundException;
+import java.io.InputStream;
+import java.util.ArrayList;
+import java.util.List;
+
+/***
+ * Repository of uncompressed daily files kept in a single directory.
+ * @author Kenny
+ *
+ */
+public class DirectoryCurrencyExchangeRepository implements CurrencyExchangeRepository {
+
+	private final File directory;
+
+	public DirectoryCurrencyExchangeRepository(String directory) {
+		this.directory = new File(directory);
+	}
+
+	@Override
+	public List<String> getFileNames() {
+		List<String> fileNames = new ArrayList<String>();
+		File[] files = directory.listFiles();
+		if (files != null) {
+			for (File file : files) {
+				if (file.isFile()) fileNames.add(file.getName());
+			}
+		}
+		return fileNames;
+	}
+
+	@Override
+	public InputStream open(String date) throws FileNotFoundException {
+		return new FileInputStream(getFile(date));
+	}
+
+	@Override
+	public long lastModified(String date) {
+		return getFile(date).lastModified();
+	}
+
+	@Override
+	public File getFile(String date) {
+		return new File(directory, date + ".txt");
+	}
+
+	@Override
+	public String getLocation() {
+		return directory.getPath();
+	}
+
+}
@@ -0,0 +1,217 @@
+package interview.dataspark.currencyexchange;
+
+import java.io.BufferedReader;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileNotFoundException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.zip.GZIPInputStream;
+
+/***
+ * Repository of per-month compressed bundles kept in a single directory, e.g. "2017-01.gz".
+ * A bundle is the gzip of the month's daily files concatenated, each one preceded by a framing line "#yyyy-MM-dd" starting on a new line.
+ * Daily files are read back byte for byte, line breaks included, except for the one line break preceding each framing line and ending the bundle,
+ * taken as the separator written so that the framing line starts on a new line.
+ * A bundle is decompressed as a stream on first access to any of its dates, and the decompressed daily files of the
+ * most recently used cachedMonths bundles are kept until the bundle is modified.
+ * Listing streams each bundle once to read its framing lines only, and lists it again only once its modification time changes.
+ * @author Kenny
+ *
+ */
+public class MonthlyBundleCurrencyExchangeRepository implements CurrencyExchangeRepository {
+
+	public static final String FRAME_PREFIX = "#";
+	public static final String BUNDLE_SUFFIX = ".gz";
+
+	private final File directory;
+	private final Map<String, Month> months;
+	//file names of every bundle, kept apart from the bounded decompressed months so that listing an unchanged bundle only costs a stat
+	private final Map<String, Listing> listedMonths = new ConcurrentHashMap<String, Listing>();
+
+	public MonthlyBundleCurrencyExchangeRepository(String directory, final int cachedMonths) {
+		this.directory = new File(directory);
+		this.months = new LinkedHashMap<String, Month>(16, 0.75f, true) {
+			private static final long serialVersionUID = 1L;
+			@Override
+			protected boolean removeEldestEntry(Map.Entry<String, Month> eldest) {
+				return size() > cachedMonths;
+			}
+		};
+	}
+
+	@Override
+	public List<String> getFileNames() throws IOException {
+		List<String> names = new ArrayList<String>();
+		File[] files = directory.listFiles();
+		if (files != null) {
+			for (File file : files) {
+				if (file.isFile() && file.getName().endsWith(BUNDLE_SUFFIX)) {
+					String month = file.getName().substring(0, file.getName().length() - BUNDLE_SUFFIX.length());
+					long lastModified = file.lastModified();
+					Listing listed = listedMonths.get(month);
+					if (listed == null || listed.lastModified != lastModified) {
+						listed = new Listing(lastModified, list(file));
+						listedMonths.put(month, listed);
+					}
+					names.addAll(listed.fileNames);
+				}
+			}
+		}
+		return names;
+	}
+
+	@Override
+	public InputStream open(String date) throws IOException {
+		byte[] content = date.length() < 7 ? null : getMonth(date.substring(0, 7)).days.get(date);
+		if (content == null) throw new FileNotFoundException(date + ".txt not found in " + getLocation());
+		return new ByteArrayInputStream(content);
+	}
+
+	/***
+	 * Returns the modification time of the bundle holding the date, so every date of a rewritten bundle is seen as changed.
+	 */
+	@Override
+	public long lastModified(String date) {
+		return date.length() < 7 ? 0 : new File(directory, date.substring(0, 7) + BUNDLE_SUFFIX).lastModified();
+	}
+
+	/***
+	 * Entries are compressed, there is no daily file on disk.
+	 */
+	@Override
+	public File getFile(String date) {
+		return null;
+	}
+
+	@Override
+	public String getLocation() {
+		return directory.getPath();
+	}
+
+	private Month getMonth(String month) throws IOException {
+		File bundle = new File(directory, month + BUNDLE_SUFFIX);
+		long lastModified = bundle.lastModified();
+		synchronized (months) {
+			Month cached = months.get(month);
+			if (cached != null && cached.lastModified == lastModified) return cached;
+		}
+		if (!bundle.isFile()) return new Month(0, Collections.<String, byte[]>emptyMap());
+		//decompressed outside the lock, a concurrent first access to the same month only costs a second decompression
+		Month decompressed = new Month(lastModified, decompress(bundle));
+		synchronized (months) {
+			months.put(month, decompressed);
+		}
+		return decompressed;
+	}
+
+	/***
+	 * Streams a bundle through to collect its framing lines only, nothing of the daily files is kept.
+	 */
+	private static List<String> list(File bundle) throws IOException {
+		List<String> fileNames = new ArrayList<String>();
+		BufferedReader reader = new BufferedReader(new InputStreamReader(new GZIPInputStream(new FileInputStream(bundle)), StandardCharsets.UTF_8));
+		try {
+			String line;
+			while ((line = reader.readLine()) != null) {
+				if (line.startsWith(FRAME_PREFIX)) fileNames.add(line.substring(FRAME_PREFIX.length()).trim() + ".txt");
+			}
+		} finally {
+			reader.close();
+		}
+		return fileNames;
+	}
+
+	private static Map<String, byte[]> decompress(File bundle) throws IOException {
+		ByteArrayOutputStream decompressed = new ByteArrayOutputStream();
+		InputStream in = new GZIPInputStream(new FileInputStream(bundle));
+		try {
+			byte[] buffer = new byte[8192];
+			int read;
+			while ((read = in.read(buffer)) != -1) {
+				decompressed.write(buffer, 0, read);
+			}
+		} finally {
+			in.close();
+		}
+		byte[] bytes = decompressed.toByteArray();
+
+		Map<String, byte[]> days = new HashMap<String, byte[]>();
+		byte[] prefix = FRAME_PREFIX.getBytes(StandardCharsets.UTF_8);
+		String date = null;
+		int contentStart = 0;
+		int lineStart = 0;
+		while (lineStart < bytes.length) {
+			int lineEnd = lineStart;
+			while (lineEnd < bytes.length && bytes[lineEnd] != '\n') lineEnd++;
+			if (startsWith(bytes, lineStart, prefix)) {
+				if (date != null) days.put(date, content(bytes, contentStart, lineStart));
+				date = new String(bytes, lineStart + prefix.length, lineEnd - lineStart - prefix.length, StandardCharsets.UTF_8).trim();
+				contentStart = Math.min(lineEnd + 1, bytes.length);
+			}
+			lineStart = lineEnd + 1;
+		}
+		if (date != null) days.put(date, content(bytes, contentStart, bytes.length));
+		return days;
+	}
+
+	private static boolean startsWith(byte[] bytes, int offset, byte[] prefix) {
+		if (offset + prefix.length > bytes.length) return false;
+		for (int i = 0; i < prefix.length; i++) {
+			if (bytes[offset + i] != prefix[i]) return false;
+		}
+		return true;
+	}
+
+	/***
+	 * Bytes of one daily file, without the line break separating it from the next framing line.
+	 */
+	private static byte[] content(byte[] bytes, int from, int to) {
+		if (to > from && bytes[to - 1] == '\n') {
+			to--;
+			if (to > from && bytes[to - 1] == '\r') to--;
+		}
+		return Arrays.copyOfRange(bytes, from, to);
+	}
+
+	/***
+	 * File names of one bundle, as of the bundle modification time.
+	 */
+	private static class Listing {
+
+		private final long lastModified;
+		private final List<String> fileNames;
+
+		private Listing(long lastModified, List<String> fileNames) {
+			this.lastModified = lastModified;
+			this.fileNames = fileNames;
+		}
+	}
+
+	/***
+	 * Daily files of one bundle, as of the bundle modification time.
+	 */
+	private static class Month {
+
+		private final long lastModified;
+		private final Map<String, byte[]> days;
+
+		private Month(long lastModified, Map<String, byte[]> days) {
+			this.lastModified = lastModified;
+			this.days = days;
+		}
+	}
+
+}
@@ -0,0 +1,134 @@
+package interview.dataspark.currencyexchange;
+
+import java.io.Closeable;
+import java.io.File;
+import java.io.FileNotFoundException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.ArrayList;
+import java.util.Enumeration;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipFile;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/***
+ * Repository of daily files packed in a single zip archive, e.g. "history.zip" holding "2017/2017-01-01.txt".
+ * The central directory is read when the archive is opened and indexed by file name, so looking an entry up never scans the archive.
+ * It is read again once the modification time of the archive changes, so that a replaced archive is picked up by the next refresh.
+ * The archive replaced last is closed only when the next one is, so that a daily file still being streamed from it can be read to the end.
+ * Entries are indexed by base name: if several folders hold the same daily file, the first one is read and the others are logged and ignored.
+ * Entries are inflated while being streamed; the rate store keeps the parsed result.
+ * @author Kenny
+ *
+ */
+public class ZipCurrencyExchangeRepository implements CurrencyExchangeRepository, Closeable {
+
+	private static final Logger LOGGER = LoggerFactory.getLogger(ZipCurrencyExchangeRepository.class);
+
+	private final File file;
+	private volatile Archive archive;
+	private Archive replaced;
+
+	public ZipCurrencyExchangeRepository(String archive) throws IOException {
+		this.file = new File(archive);
+		this.archive = new Archive(file, file.lastModified());
+	}
+
+	@Override
+	public List<String> getFileNames() throws IOException {
+		return new ArrayList<String>(archive().entries.keySet());
+	}
+
+	@Override
+	public InputStream open(String date) throws IOException {
+		Archive archive = archive();
+		ZipEntry entry = archive.entries.get(date + ".txt");
+		if (entry == null) throw new FileNotFoundException(date + ".txt not found in " + getLocation());
+		return archive.zipFile.getInputStream(entry);
+	}
+
+	@Override
+	public long lastModified(String date) {
+		ZipEntry entry;
+		try {
+			entry = archive().entries.get(date + ".txt");
+		} catch (IOException e) {
+			return 0;
+		}
+		return entry == null ? 0 : Math.max(0, entry.getTime());
+	}
+
+	/***
+	 * Entries are compressed, there is no daily file on disk.
+	 */
+	@Override
+	public File getFile(String date) {
+		return null;
+	}
+
+	@Override
+	public String getLocation() {
+		return file.getPath();
+	}
+
+	@Override
+	public synchronized void close() throws IOException {
+		if (replaced != null) replaced.zipFile.close();
+		archive.zipFile.close();
+	}
+
+	/***
+	 * @return archive as of its current modification time, its central directory read again if it changed
+	 * @throws IOException if a replaced archive cannot be read
+	 */
+	private Archive archive() throws IOException {
+		Archive current = archive;
+		long lastModified = file.lastModified();
+		if (lastModified == current.lastModified) return current;
+		synchronized (this) {
+			if (archive.lastModified != lastModified) {
+				Archive next = new Archive(file, lastModified);
+				if (replaced != null) replaced.zipFile.close();
+				replaced = archive;
+				archive = next;
+			}
+			return archive;
+		}
+	}
+
+	/***
+	 * Central directory of the archive as of one modification time.
+	 */
+	private static class Archive {
+
+		private final long lastModified;
+		private final ZipFile zipFile;
+		private final Map<String, ZipEntry> entries = new HashMap<String, ZipEntry>();
+
+		private Archive(File file, long lastModified) throws IOException {
+			this.lastModified = lastModified;
+			this.zipFile = new ZipFile(file);
+			Enumeration<? extends ZipEntry> enumeration = zipFile.entries();
+			while (enumeration.hasMoreElements()) {
+				ZipEntry entry = enumeration.nextElement();
+				if (!entry.isDirectory()) {
+					String name = entry.getName();
+					String fileName = name.substring(name.lastIndexOf('/') + 1);
+					ZipEntry previous = entries.get(fileName);
+					if (previous != null) {
+						//the first entry of the central directory is kept, whatever the order entries are listed in by tools
+						LOGGER.warn("Ignoring {} in {}, {} is already read from {}", name, file.getPath(), fileName, previous.getName());
+						continue;
+					}
+					entries.put(fileName, entry);
+				}
+			}
+		}
+	}
+
+}
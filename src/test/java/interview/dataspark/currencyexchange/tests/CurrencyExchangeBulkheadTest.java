@@ -0,0 +1,64 @@
+package interview.dataspark.currencyexchange.tests;
+
+import static org.junit.Assert.*;
+
+import java.util.Map;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+
+import org.junit.Test;
+import org.springframework.mock.web.MockHttpServletRequest;
+import org.springframework.mock.web.MockHttpServletResponse;
+
+import interview.dataspark.currencyexchange.CurrencyExchangeBulkhead;
+import interview.dataspark.currencyexchange.CurrencyExchangeBulkheadInterceptor;
+
+public class CurrencyExchangeBulkheadTest {
+
+	@Test
+	public void testQueuedRequestIsAdmittedOnRelease() throws Exception {
+		final CurrencyExchangeBulkhead bulkhead = new CurrencyExchangeBulkhead("range", 1, 1, 5000);
+		assertTrue(bulkhead.tryAcquire());
+
+		ExecutorService executor = Executors.newSingleThreadExecutor();
+		Future<Boolean> queued = executor.submit(() -> bulkhead.tryAcquire());
+		while (!Integer.valueOf(1).equals(bulkhead.getMetrics().get("bulkhead.range.queued"))) Thread.sleep(1);
+
+		//queue is full, rejected without waiting
+		long start = System.nanoTime();
+		assertFalse(bulkhead.tryAcquire());
+		assertTrue(System.nanoTime() - start < TimeUnit.SECONDS.toNanos(1));
+
+		bulkhead.release();
+		assertTrue(queued.get(5, TimeUnit.SECONDS));
+		executor.shutdown();
+
+		Map<String, Object> metrics = bulkhead.getMetrics();
+		assertEquals(2L, metrics.get("bulkhead.range.admitted"));
+		assertEquals(1L, metrics.get("bulkhead.range.rejected.queueFull"));
+		assertEquals(0L, metrics.get("bulkhead.range.rejected.timeout"));
+		assertEquals(1L, metrics.get("bulkhead.range.queueWait.count"));
+		assertEquals(1, metrics.get("bulkhead.range.active"));
+	}
+
+	@Test
+	public void testRejectedWithRetryAfter() throws Exception {
+		CurrencyExchangeBulkhead bulkhead = new CurrencyExchangeBulkhead("range", 1, 1, 10);
+		CurrencyExchangeBulkheadInterceptor interceptor = new CurrencyExchangeBulkheadInterceptor(bulkhead, 2);
+
+		MockHttpServletRequest first = new MockHttpServletRequest("GET", "/ByCurrency/SGD/2017-01-01/2018-12-31");
+		MockHttpServletResponse firstResponse = new MockHttpServletResponse();
+		assertTrue(interceptor.preHandle(first, firstResponse, null));
+
+		MockHttpServletResponse rejected = new MockHttpServletResponse();
+		assertFalse(interceptor.preHandle(new MockHttpServletRequest("GET", "/ByCurrency/SGD/2017-01-01/2018-12-31"), rejected, null));
+		assertEquals(503, rejected.getStatus());
+		assertEquals("2", rejected.getHeader("Retry-After"));
+		assertEquals(1L, bulkhead.getMetrics().get("bulkhead.range.rejected.timeout"));
+
+		interceptor.afterCompletion(first, firstResponse, null, null);
+		assertEquals(0, bulkhead.getMetrics().get("bulkhead.range.active"));
+	}
+}
@@ -27,12 +27,14 @@ import java.time.format.DateTimeFormatter;
 import java.time.format.DateTimeFormatterBuilder;
 import java.time.format.DateTimeParseException;
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.List;
 
 import static org.hamcrest.Matchers.*;
 
 import interview.dataspark.currencyexchange.CurrencyExchangeModel;
 import interview.dataspark.currencyexchange.CurrencyExchangeController;
+import interview.dataspark.currencyexchange.CurrencyExchangeMatrix;
 import interview.dataspark.currencyexchange.CurrencyExchangeService;
 
 @RunWith(MockitoJUnitRunner.class)
@@ -139,6 +141,37 @@ public class CurrencyExchangeControllerTest {
 		}		
 	}
 	
+	@Test
+	public void testGetRateByDateAsOf() throws Exception {
+		
+		String[] dates = {/* weekend date */ "2019-01-05", /* date before repository */ "2016-12-31"};
+		
+		for(String date : dates) {
+			
+			List<Object> list = new ArrayList<Object>();
+			if (date.equals("2019-01-05")) {
+				CurrencyExchangeModel model = new CurrencyExchangeModel("2018-12-31", "CHF", "USD", 1.02);
+				model.setRequestedDate(date);
+				list.add(model);
+			} else {
+				list.add("No data available on or before specified date - " + date);
+			}
+			
+			Mockito.when(exchangeService.getRateByDateAsOf(date)).thenReturn(list);
+			
+			mockMvc.perform(get("/ByDate/" + date).param("asOf", "true"))
+			.andDo(print())
+			.andExpect(status().isOk())
+			.andExpect(jsonPath("$", hasSize(list.size())))
+			.andExpect(content().string(new ObjectMapper().writeValueAsString(list)));
+		}
+		
+		mockMvc.perform(get("/ByDate/2019-01-05/CHF").param("asOf", "true"))
+		.andExpect(status().isOk());
+		Mockito.verify(exchangeService).getSpecificRateByDateAsOf("2019-01-05", "CHF");
+		Mockito.verify(exchangeService, Mockito.never()).getSpecificRateByDate("2019-01-05", "CHF");
+	}
+	
 	@Test
 	public void testGetSpecificRateByDate() throws Exception {
 		
@@ -394,4 +427,27 @@ public class CurrencyExchangeControllerTest {
 			}
 		}		
 	}
+
+	@Test
+	public void testGetRatesByCurrencies() throws Exception {
+		
+		List<Object> list = new ArrayList<Object>();
+		double[][] rates = {{0.92}, {Double.NaN}};
+		list.add(new CurrencyExchangeMatrix("2017-01-01", "2017-01-02", "EUR", Arrays.asList("CHF", "XXX"), null, Arrays.asList("2017-01-01"), rates));
+		
+		Mockito.when(exchangeService.getRatesByCurrencies("CHF,XXX", "2017-01-01", "2017-01-02", "EUR")).thenReturn(list);
+		
+		mockMvc.perform(get("/ByCurrencies/CHF,XXX/2017-01-01/2017-01-02").param("referenceCurrency", "EUR"))
+		.andDo(print())
+		.andExpect(status().isOk())
+		.andExpect(jsonPath("$", hasSize(1)))
+		.andExpect(jsonPath("$[0].currencies", hasSize(2)))
+		.andExpect(jsonPath("$[0].rates[0][0]").value(0.92))
+		.andExpect(jsonPath("$[0].rates[1][0]").value(nullValue()))
+		.andExpect(content().string(new ObjectMapper().writeValueAsString(list)));
+		
+		mockMvc.perform(get("/ByCurrencies/CHF,EUR/2017-01-01/2017-01-02"))
+		.andExpect(status().isOk());
+		Mockito.verify(exchangeService).getRatesByCurrencies("CHF,EUR", "2017-01-01", "2017-01-02", null);
+	}
 }
@@ -0,0 +1,218 @@
+package interview.dataspark.currencyexchange.tests;
+
+import static org.junit.Assert.*;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.OutputStream;
+import java.math.BigDecimal;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.zip.GZIPOutputStream;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipOutputStream;
+
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+import org.springframework.mock.web.MockHttpServletResponse;
+
+import interview.dataspark.currencyexchange.CurrencyExchangeDay;
+import interview.dataspark.currencyexchange.CurrencyExchangeExporter;
+import interview.dataspark.currencyexchange.CurrencyExchangeRateStore;
+import interview.dataspark.currencyexchange.CurrencyExchangeRepository;
+import interview.dataspark.currencyexchange.DirectoryCurrencyExchangeRepository;
+import interview.dataspark.currencyexchange.MonthlyBundleCurrencyExchangeRepository;
+import interview.dataspark.currencyexchange.ZipCurrencyExchangeRepository;
+
+public class CurrencyExchangeExporterTest {
+
+	private String fileRepository = "./src/test/resources";
+
+	private String[] dates = {"2017-01-01", "2017-01-02", "2017-01-03"};
+
+	@Rule
+	public TemporaryFolder folder = new TemporaryFolder();
+
+	private CurrencyExchangeExporter exporter;
+
+	@Before
+	public void setUp() throws Exception {
+		exporter = newExporter(new DirectoryCurrencyExchangeRepository(fileRepository));
+	}
+
+	private CurrencyExchangeExporter newExporter(CurrencyExchangeRepository repository) throws Exception {
+		CurrencyExchangeRateStore rateStore = new CurrencyExchangeRateStore();
+		rateStore.setRepository(repository);
+		rateStore.setHotWindowDays(31);
+		rateStore.init();
+		CurrencyExchangeExporter exporter = new CurrencyExchangeExporter();
+		exporter.setRepository(repository);
+		exporter.setRateStore(rateStore);
+		//smaller than a daily file, so that every path flushes the buffer in between
+		exporter.setBufferBytes(64);
+		return exporter;
+	}
+
+	@Test
+	public void testFramedExport() throws Exception {
+		MockHttpServletResponse response = new MockHttpServletResponse();
+		assertNull(exporter.export("2017-01-03", "2017-01-01", "framed", response));
+		assertEquals("attachment; filename=\"2017-01-01_2017-01-03_framed.txt\"", response.getHeader("Content-Disposition"));
+
+		StringBuilder expected = new StringBuilder();
+		for (String date : dates) {
+			expected.append("#").append(date).append("\r\n");
+			expected.append(new String(Files.readAllBytes(new File(fileRepository, date + ".txt").toPath()), StandardCharsets.UTF_8)).append("\r\n");
+		}
+		assertEquals(expected.toString(), response.getContentAsString());
+		assertEquals((long) expected.length(), exporter.getMetrics().get("export.bytes"));
+		assertEquals(3L, exporter.getMetrics().get("export.days"));
+	}
+
+	@Test
+	public void testRawExportIsIdenticalFromZip() throws Exception {
+		File archive = folder.newFile("history.zip");
+		ZipOutputStream out = new ZipOutputStream(new FileOutputStream(archive));
+		for (String date : dates) {
+			out.putNextEntry(new ZipEntry("2017/" + date + ".txt"));
+			out.write(Files.readAllBytes(new File(fileRepository, date + ".txt").toPath()));
+			out.closeEntry();
+		}
+		out.close();
+
+		MockHttpServletResponse fromDirectory = new MockHttpServletResponse();
+		exporter.export("2017-01-01", "2017-01-03", "raw", fromDirectory);
+		MockHttpServletResponse fromZip = new MockHttpServletResponse();
+		CurrencyExchangeExporter zipExporter = newExporter(new ZipCurrencyExchangeRepository(archive.getPath()));
+		zipExporter.export("2017-01-01", "2017-01-03", "raw", fromZip);
+
+		assertArrayEquals(fromDirectory.getContentAsByteArray(), fromZip.getContentAsByteArray());
+		assertTrue((Long) exporter.getMetrics().get("export.fileChannelBytes") > 0);
+		assertEquals(0L, zipExporter.getMetrics().get("export.fileChannelBytes"));
+	}
+
+	@Test
+	public void testRawExportIsIdenticalFromMonthlyBundle() throws Exception {
+		File directory = folder.newFolder();
+		OutputStream out = new GZIPOutputStream(new FileOutputStream(new File(directory, "2017-01.gz")));
+		for (String date : dates) {
+			out.write(("#" + date + "\n").getBytes(StandardCharsets.UTF_8));
+			out.write(Files.readAllBytes(new File(fileRepository, date + ".txt").toPath()));
+			out.write('\n');
+		}
+		out.close();
+
+		MockHttpServletResponse fromDirectory = new MockHttpServletResponse();
+		exporter.export("2017-01-01", "2017-01-03", "raw", fromDirectory);
+		MockHttpServletResponse fromBundle = new MockHttpServletResponse();
+		newExporter(new MonthlyBundleCurrencyExchangeRepository(directory.getPath(), 1)).export("2017-01-01", "2017-01-03", "raw", fromBundle);
+
+		assertTrue(fromDirectory.getContentAsString().contains("\r\n"));
+		assertArrayEquals(fromDirectory.getContentAsByteArray(), fromBundle.getContentAsByteArray());
+	}
+
+	@Test
+	public void testExportIsConsistentWithSnapshot() throws Exception {
+		File directory = folder.newFolder();
+		for (String date : dates) {
+			Files.write(new File(directory, date + ".txt").toPath(), ("1 CHF traded at 1.04 times USD\r\n100 JPY traded at 0.9 times USD").getBytes(StandardCharsets.UTF_8));
+		}
+		CurrencyExchangeExporter exporter = newExporter(new DirectoryCurrencyExchangeRepository(directory.getPath()));
+		exporter.getRateStore().getRates("2017-01-01");
+
+		//modified and removed while the snapshot still lists their previous version
+		File modified = new File(directory, "2017-01-01.txt");
+		Files.write(modified.toPath(), "1 CHF traded at 0.5 times USD".getBytes(StandardCharsets.UTF_8));
+		modified.setLastModified(modified.lastModified() + 1000);
+		new File(directory, "2017-01-03.txt").delete();
+
+		MockHttpServletResponse response = new MockHttpServletResponse();
+		assertNull(exporter.export("2017-01-01", "2017-01-03", "framed", response));
+		assertEquals("#2017-01-01\r\n1 CHF traded at 1.04 times USD\r\n100 JPY traded at 0.9 times USD\r\n"
+				+ "#2017-01-02\r\n1 CHF traded at 1.04 times USD\r\n100 JPY traded at 0.9 times USD\r\n"
+				+ "#2017-01-03\r\n", response.getContentAsString());
+	}
+
+	@Test
+	public void testIngestedDayIsExportedUntilRefreshed() throws Exception {
+		File directory = folder.newFolder();
+		Files.write(new File(directory, "2017-01-01.txt").toPath(), "1 CHF traded at 1.04 times USD\r\n".getBytes(StandardCharsets.UTF_8));
+		CurrencyExchangeExporter exporter = newExporter(new DirectoryCurrencyExchangeRepository(directory.getPath()));
+		CurrencyExchangeRateStore rateStore = exporter.getRateStore();
+		rateStore.ingest(Arrays.asList(new CurrencyExchangeDay("2017-01-01", new String[] {"CHF"}, new String[] {"USD"}, new double[] {1}, new double[] {0.5})));
+		assertEquals(0, rateStore.snapshot().getLastModified("2017-01-01"));
+
+		MockHttpServletResponse response = new MockHttpServletResponse();
+		exporter.export("2017-01-01", "2017-01-01", "raw", response);
+		assertEquals("1 CHF traded at 0.5 times USD\r\n", response.getContentAsString());
+
+		//the file is not the source of the ingested day, refresh reads it again
+		assertEquals(Arrays.asList("2017-01-01"), rateStore.refresh());
+		assertEquals(1.04, rateStore.getRates("2017-01-01").getExchangeRate(0), 0.0);
+		response = new MockHttpServletResponse();
+		exporter.export("2017-01-01", "2017-01-01", "raw", response);
+		assertEquals("1 CHF traded at 1.04 times USD\r\n", response.getContentAsString());
+		assertEquals(Collections.emptyList(), rateStore.refresh());
+	}
+
+	@Test
+	public void testNormalizedExport() throws Exception {
+		MockHttpServletResponse response = new MockHttpServletResponse();
+		exporter.export("2017-01-01", "2017-01-03", "normalized", response);
+		assertTrue(response.getContentType().startsWith("text/csv"));
+		assertEquals("attachment; filename=\"2017-01-01_2017-01-03_normalized.csv\"", response.getHeader("Content-Disposition"));
+
+		String[] lines = response.getContentAsString().split("\r\n");
+		int records = 0;
+		for (String date : dates) {
+			CurrencyExchangeDay day = CurrencyExchangeDay.read(date, Files.newInputStream(new File(fileRepository, date + ".txt").toPath()));
+			for (int i = 0; i < day.size(); i++) {
+				assertEquals(date + "," + day.getCurrencyOfInterest(i) + "," + day.getReferenceCurrency(i) + "," + BigDecimal.valueOf(day.getExchangeRate(i)).stripTrailingZeros().toPlainString(), lines[records++]);
+			}
+		}
+		assertEquals(records, lines.length);
+
+		//a scan, the rate store neither keeps the dates read nor counts them
+		CurrencyExchangeRateStore.Snapshot snapshot = exporter.getRateStore().snapshot();
+		for (String date : dates) {
+			assertFalse(snapshot.isLoaded(date));
+		}
+		assertEquals(0L, exporter.getRateStore().getMetrics().get("rateStore.hot.hits"));
+	}
+
+	@Test
+	public void testNormalizedRatesAreNotInScientificNotation() throws Exception {
+		File directory = folder.newFolder();
+		Files.write(new File(directory, "2017-01-01.txt").toPath(), "10000 IDR traded at 0.7 times USD\r\n1 CHF traded at 1.0 times USD".getBytes(StandardCharsets.UTF_8));
+		MockHttpServletResponse response = new MockHttpServletResponse();
+		newExporter(new DirectoryCurrencyExchangeRepository(directory.getPath())).export("2017-01-01", "2017-01-01", "normalized", response);
+		assertEquals("2017-01-01,IDR,USD,0.00007\r\n2017-01-01,CHF,USD,1\r\n", response.getContentAsString());
+	}
+
+	@Test
+	public void testExportDoesNotPromoteColdDates() throws Exception {
+		exporter.getRateStore().setHotWindowDays(1);
+		exporter.getRateStore().setPromoteAfterHits(1);
+		exporter.getRateStore().getRates("2017-01-01");
+		assertEquals(1, exporter.getRateStore().getMetrics().get("rateStore.cold.size"));
+		for (int i = 0; i < 3; i++) {
+			exporter.export("2017-01-01", "2017-01-03", "normalized", new MockHttpServletResponse());
+		}
+		assertEquals(0L, exporter.getRateStore().getMetrics().get("rateStore.promotions"));
+		assertEquals(0L, exporter.getRateStore().getMetrics().get("rateStore.cold.hits"));
+		assertEquals(1, exporter.getRateStore().getMetrics().get("rateStore.cold.size"));
+	}
+
+	@Test
+	public void testInvalidExport() throws Exception {
+		MockHttpServletResponse response = new MockHttpServletResponse();
+		assertEquals("No data available for specified dates - 2016-01-01, 2016-12-31", exporter.export("2016-01-01", "2016-12-31", "framed", response).get(0));
+		assertEquals("Invalid dates - 7777-77-77, 2017-01-01, expected yyyy-MM-dd format", exporter.export("7777-77-77", "2017-01-01", "raw", response).get(0));
+		assertTrue(exporter.export("2017-01-01", "2017-01-01", "json", response).get(0) instanceof String);
+		assertEquals(0, response.getContentAsByteArray().length);
+	}
+}
@@ -0,0 +1,72 @@
+package interview.dataspark.currencyexchange.tests;
+
+import static org.junit.Assert.*;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import interview.dataspark.currencyexchange.CurrencyExchangeDay;
+import interview.dataspark.currencyexchange.CurrencyExchangeOffsetIndex;
+import interview.dataspark.currencyexchange.DirectoryCurrencyExchangeRepository;
+
+public class CurrencyExchangeOffsetIndexTest {
+
+	private String fileRepository = "./src/test/resources";
+
+	private CurrencyExchangeOffsetIndex offsetIndex;
+
+	@Rule
+	public TemporaryFolder folder = new TemporaryFolder();
+
+	@Before
+	public void setUp() throws Exception {
+		offsetIndex = new CurrencyExchangeOffsetIndex();
+		offsetIndex.setRepository(new DirectoryCurrencyExchangeRepository(fileRepository));
+		offsetIndex.setEnabled(true);
+		offsetIndex.setMaxFiles(2);
+	}
+
+	@Test
+	public void testLookupMatchesFullParse() throws Exception {
+		CurrencyExchangeDay full = CurrencyExchangeDay.read("2017-01-01", new FileInputStream(new File(fileRepository, "2017-01-01.txt")));
+		long lastModified = new File(fileRepository, "2017-01-01.txt").lastModified();
+		for (int i = 0; i < full.size(); i++) {
+			CurrencyExchangeDay day = offsetIndex.getRates("2017-01-01", full.getCurrencyOfInterest(i), lastModified);
+			assertNotNull(day);
+			boolean found = false;
+			for (int j = 0; j < day.size(); j++) {
+				assertEquals(full.getCurrencyOfInterest(i), day.getCurrencyOfInterest(j));
+				found |= full.getReferenceCurrency(i).equals(day.getReferenceCurrency(j)) && full.getExchangeRate(i) == day.getExchangeRate(j);
+			}
+			assertTrue(found);
+		}
+		assertTrue(offsetIndex.getRates("2017-01-01", "XXX", lastModified).isEmpty());
+		assertNull(offsetIndex.getRates("7777-77-77", "CHF", 0));
+		assertEquals(1L, offsetIndex.getMetrics().get("offsetIndex.builds"));
+	}
+
+	@Test
+	public void testIndexIsRebuiltWhenFileChanges() throws Exception {
+		File directory = folder.newFolder();
+		File file = new File(directory, "2017-01-01.txt");
+		Files.write(file.toPath(), "1 CHF traded at 1.04 times USD\r\n1 EUR traded at 1.1 times USD".getBytes(StandardCharsets.UTF_8));
+		offsetIndex.setRepository(new DirectoryCurrencyExchangeRepository(directory.getPath()));
+		long lastModified = file.lastModified();
+		assertEquals(1.1, offsetIndex.getRates("2017-01-01", "EUR", lastModified).getExchangeRate(0), 0.0);
+
+		Files.write(file.toPath(), "1 EUR traded at 1.2 times USD".getBytes(StandardCharsets.UTF_8));
+		file.setLastModified(lastModified + 1000);
+		//not the version the caller expects
+		assertNull(offsetIndex.getRates("2017-01-01", "EUR", lastModified));
+		assertEquals(1.2, offsetIndex.getRates("2017-01-01", "EUR", lastModified + 1000).getExchangeRate(0), 0.0);
+		assertTrue(offsetIndex.getRates("2017-01-01", "CHF", lastModified + 1000).isEmpty());
+		assertEquals(2L, offsetIndex.getMetrics().get("offsetIndex.builds"));
+	}
+}
@@ -0,0 +1,233 @@
+package interview.dataspark.currencyexchange.tests;
+
+import static org.junit.Assert.*;
+
+import java.io.File;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+import org.springframework.context.ApplicationEvent;
+import org.springframework.context.ApplicationEventPublisher;
+
+import interview.dataspark.currencyexchange.CurrencyExchangeDataChangedEvent;
+import interview.dataspark.currencyexchange.CurrencyExchangeDay;
+import interview.dataspark.currencyexchange.CurrencyExchangeRateStore;
+import interview.dataspark.currencyexchange.CurrencyExchangeStartupLoader;
+import interview.dataspark.currencyexchange.DirectoryCurrencyExchangeRepository;
+
+public class CurrencyExchangeRateStoreTest {
+
+	private String fileRepository = "./src/test/resources";
+
+	private CurrencyExchangeRateStore rateStore;
+
+	@Rule
+	public TemporaryFolder folder = new TemporaryFolder();
+
+	@Before
+	public void setUp() throws Exception {
+		rateStore = new CurrencyExchangeRateStore();
+		rateStore.setRepository(new DirectoryCurrencyExchangeRepository(fileRepository));
+		rateStore.setHotWindowDays(31);
+		rateStore.setPromoteAfterHits(2);
+		rateStore.setPromotedCapacity(1);
+		rateStore.init();
+	}
+
+	@Test
+	public void testRecentDateIsKeptHot() throws Exception {
+		CurrencyExchangeDay day = rateStore.getRates("2018-12-31");
+		assertNotNull(day);
+		assertFalse(day.isEmpty());
+		assertSame(day, rateStore.getRates("2018-12-31"));
+
+		Map<String, Object> metrics = rateStore.getMetrics();
+		assertEquals(1, metrics.get("rateStore.hot.size"));
+		assertEquals(0, metrics.get("rateStore.cold.size"));
+		assertEquals(1L, metrics.get("rateStore.hot.hits"));
+		assertEquals(1L, metrics.get("rateStore.misses"));
+	}
+
+	@Test
+	public void testOldDateIsKeptColdAndDecodedIdentically() throws Exception {
+		CurrencyExchangeDay loaded = rateStore.getRates("2017-01-01");
+		CurrencyExchangeDay decoded = rateStore.getRates("2017-01-01");
+		assertNotSame(loaded, decoded);
+		assertEquals(loaded.size(), decoded.size());
+		for (int i = 0; i < loaded.size(); i++) {
+			assertEquals(loaded.getCurrencyOfInterest(i), decoded.getCurrencyOfInterest(i));
+			assertEquals(loaded.getReferenceCurrency(i), decoded.getReferenceCurrency(i));
+			assertEquals(loaded.getExchangeRate(i), decoded.getExchangeRate(i), 0.0);
+		}
+
+		Map<String, Object> metrics = rateStore.getMetrics();
+		assertEquals(1, metrics.get("rateStore.cold.size"));
+		assertEquals(1L, metrics.get("rateStore.cold.hits"));
+		assertTrue((Long) metrics.get("rateStore.cold.bytes") > 0);
+	}
+
+	@Test
+	public void testColdDateIsPromotedAndDemotedByAccessFrequency() throws Exception {
+		rateStore.getRates("2017-01-01");
+		rateStore.getRates("2017-01-01");
+		rateStore.getRates("2017-01-01");
+		assertEquals(1L, rateStore.getMetrics().get("rateStore.promotions"));
+		assertEquals(1, rateStore.getMetrics().get("rateStore.hot.size"));
+
+		rateStore.getRates("2017-01-02");
+		Object coldBytes = rateStore.getMetrics().get("rateStore.cold.bytes");
+		rateStore.getRates("2017-01-02");
+		rateStore.getRates("2017-01-02");
+		Map<String, Object> metrics = rateStore.getMetrics();
+		assertEquals(2L, metrics.get("rateStore.promotions"));
+		assertEquals(1L, metrics.get("rateStore.demotions"));
+		assertEquals(1, metrics.get("rateStore.hot.promoted"));
+		assertEquals(1, metrics.get("rateStore.cold.size"));
+		//both dates keep the buffer they were first encoded into, whichever tier they are in
+		assertEquals(coldBytes, metrics.get("rateStore.cold.bytes"));
+	}
+
+	@Test
+	public void testFloorDate() throws Exception {
+		assertEquals("2017-01-01", rateStore.floorDate("2017-01-01"));
+		assertEquals("2018-12-31", rateStore.floorDate("2019-01-05"));
+		assertNull(rateStore.floorDate("2016-12-31"));
+		assertNull(rateStore.floorDate("7777-77-77"));
+		assertEquals(0L, rateStore.getMetrics().get("rateStore.misses"));
+	}
+
+	@Test
+	public void testStartupLoad() throws Exception {
+		CurrencyExchangeStartupLoader startupLoader = new CurrencyExchangeStartupLoader();
+		startupLoader.setRepository(new DirectoryCurrencyExchangeRepository(fileRepository));
+		startupLoader.setRateStore(rateStore);
+		startupLoader.setThreads(4);
+		Map<String, Object> report = startupLoader.load();
+
+		int dates = rateStore.getDates().size();
+		assertEquals(4, report.get("startupLoad.threads"));
+		assertEquals((long) dates, report.get("startupLoad.files"));
+		assertEquals(0L, report.get("startupLoad.failedFiles"));
+		assertTrue((Long) report.get("startupLoad.bytes") > 0);
+
+		Map<String, Object> metrics = rateStore.getMetrics();
+		assertEquals(dates, (Integer) metrics.get("rateStore.hot.size") + (Integer) metrics.get("rateStore.cold.size"));
+		assertEquals(31, metrics.get("rateStore.hot.size"));
+		assertNotNull(rateStore.getRates("2017-06-15"));
+		assertEquals(0L, rateStore.getMetrics().get("rateStore.misses"));
+	}
+
+	@Test
+	public void testMissingDate() throws Exception {
+		assertNull(rateStore.getRates("7777-77-77"));
+	}
+
+	@Test
+	public void testSnapshotIsNotAffectedByIngestion() throws Exception {
+		CurrencyExchangeRateStore.Snapshot before = rateStore.snapshot();
+		CurrencyExchangeDay original = before.getRates("2017-01-01");
+		CurrencyExchangeDay corrected = new CurrencyExchangeDay("2017-01-01", new String[] {"CHF"}, new String[] {"USD"}, new double[] {1}, new double[] {0.5});
+		CurrencyExchangeDay added = new CurrencyExchangeDay("2019-01-01", new String[] {"CHF"}, new String[] {"USD"}, new double[] {1}, new double[] {0.6});
+		rateStore.ingest(Arrays.asList(corrected, added));
+
+		CurrencyExchangeRateStore.Snapshot after = rateStore.snapshot();
+		assertEquals(before.getVersion() + 1, after.getVersion());
+		assertEquals(original.size(), before.getRates("2017-01-01").size());
+		assertNull(before.getRates("2019-01-01"));
+		assertEquals("2018-12-31", before.floorDate("2019-01-05"));
+		assertEquals(1, after.getRates("2017-01-01").size());
+		assertEquals(0.5, after.getRates("2017-01-01").getExchangeRate(0), 0.0);
+		assertSame(added, after.getRates("2019-01-01"));
+		assertEquals("2019-01-01", after.floorDate("2019-01-05"));
+	}
+
+	@Test
+	public void testRefresh() throws Exception {
+		File directory = folder.newFolder();
+		for (String date : new String[] {"2017-01-01", "2017-01-02", "2017-01-03"}) {
+			Files.copy(new File(fileRepository, date + ".txt").toPath(), new File(directory, date + ".txt").toPath());
+		}
+		rateStore = new CurrencyExchangeRateStore();
+		rateStore.setRepository(new DirectoryCurrencyExchangeRepository(directory.getPath()));
+		rateStore.setHotWindowDays(31);
+		rateStore.init();
+		assertEquals(Collections.emptyList(), rateStore.refresh());
+		assertEquals(3, rateStore.getDates().size());
+
+		File modified = new File(directory, "2017-01-02.txt");
+		Files.write(modified.toPath(), "1 CHF traded at 0.5 times USD".getBytes(StandardCharsets.UTF_8));
+		modified.setLastModified(modified.lastModified() + 1000);
+		Files.write(new File(directory, "2017-01-04.txt").toPath(), "1 CHF traded at 0.6 times USD".getBytes(StandardCharsets.UTF_8));
+		new File(directory, "2017-01-01.txt").delete();
+
+		List<String> changed = rateStore.refresh();
+		assertEquals(Arrays.asList("2017-01-01", "2017-01-02", "2017-01-04"), changed);
+		assertEquals(Arrays.asList("2017-01-02", "2017-01-03", "2017-01-04"), rateStore.getDates());
+		assertEquals(0.5, rateStore.getRates("2017-01-02").getExchangeRate(0), 0.0);
+		assertNull(rateStore.getRates("2017-01-01"));
+		assertEquals(1L, rateStore.getMetrics().get("rateStore.refreshes"));
+	}
+
+	@Test
+	public void testDateReadByReaderIsAnnounced() throws Exception {
+		File directory = folder.newFolder();
+		Files.copy(new File(fileRepository, "2017-01-01.txt").toPath(), new File(directory, "2017-01-01.txt").toPath());
+		final List<CurrencyExchangeDataChangedEvent> events = new ArrayList<CurrencyExchangeDataChangedEvent>();
+		rateStore = new CurrencyExchangeRateStore();
+		rateStore.setRepository(new DirectoryCurrencyExchangeRepository(directory.getPath()));
+		rateStore.setEventPublisher(new ApplicationEventPublisher() {
+			@Override
+			public void publishEvent(ApplicationEvent event) {
+				events.add((CurrencyExchangeDataChangedEvent) event);
+			}
+			@Override
+			public void publishEvent(Object event) {
+				publishEvent((ApplicationEvent) event);
+			}
+		});
+		rateStore.init();
+
+		Files.write(new File(directory, "2017-01-02.txt").toPath(), "1 CHF traded at 0.6 times USD".getBytes(StandardCharsets.UTF_8));
+		assertEquals(0.6, rateStore.getRates("2017-01-02").getExchangeRate(0), 0.0);
+		assertEquals(1, events.size());
+		assertEquals(Collections.singletonList("2017-01-02"), events.get(0).getDates());
+		assertEquals(Arrays.asList("2017-01-01", "2017-01-02"), rateStore.getDates());
+		assertEquals(Collections.emptyList(), rateStore.refresh());
+		assertEquals(1, events.size());
+	}
+
+	@Test
+	public void testFileModifiedSinceListingIsLeftToRefresh() throws Exception {
+		File directory = folder.newFolder();
+		File file = new File(directory, "2017-01-01.txt");
+		Files.write(file.toPath(), "1 CHF traded at 0.5 times USD".getBytes(StandardCharsets.UTF_8));
+		rateStore = new CurrencyExchangeRateStore();
+		rateStore.setRepository(new DirectoryCurrencyExchangeRepository(directory.getPath()));
+		rateStore.init();
+		CurrencyExchangeRateStore.Snapshot before = rateStore.snapshot();
+		assertEquals(file.lastModified(), before.getLastModified("2017-01-01"));
+
+		Files.write(file.toPath(), "1 CHF traded at 0.6 times USD".getBytes(StandardCharsets.UTF_8));
+		file.setLastModified(before.getLastModified("2017-01-01") + 1000);
+		//the snapshot neither returns nor publishes a version it does not list
+		assertNull(before.getRates("2017-01-01"));
+		assertNull(before.scanRates("2017-01-01"));
+		assertFalse(before.isLoaded("2017-01-01"));
+		assertSame(before, rateStore.snapshot());
+
+		assertEquals(Collections.singletonList("2017-01-01"), rateStore.refresh());
+		CurrencyExchangeRateStore.Snapshot after = rateStore.snapshot();
+		assertEquals(file.lastModified(), after.getLastModified("2017-01-01"));
+		assertEquals(0.6, after.getRates("2017-01-01").getExchangeRate(0), 0.0);
+		assertTrue(after.isLoaded("2017-01-01"));
+	}
+}
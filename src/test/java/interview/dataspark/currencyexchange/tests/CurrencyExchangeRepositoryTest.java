@@ -0,0 +1,148 @@
+package interview.dataspark.currencyexchange.tests;
+
+import static org.junit.Assert.*;
+
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.FileNotFoundException;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.zip.GZIPOutputStream;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipOutputStream;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import interview.dataspark.currencyexchange.CurrencyExchangeRepository;
+import interview.dataspark.currencyexchange.DirectoryCurrencyExchangeRepository;
+import interview.dataspark.currencyexchange.MonthlyBundleCurrencyExchangeRepository;
+import interview.dataspark.currencyexchange.ZipCurrencyExchangeRepository;
+
+public class CurrencyExchangeRepositoryTest {
+
+	private String fileRepository = "./src/test/resources";
+
+	private String[] dates = {"2017-01-01", "2017-01-31", "2017-02-01"};
+
+	@Rule
+	public TemporaryFolder folder = new TemporaryFolder();
+
+	@Test
+	public void testZipRepository() throws Exception {
+		File archive = folder.newFile("history.zip");
+		ZipOutputStream out = new ZipOutputStream(new FileOutputStream(archive));
+		for (String date : dates) {
+			out.putNextEntry(new ZipEntry(date.substring(0, 4) + "/" + date + ".txt"));
+			out.write(Files.readAllBytes(new File(fileRepository, date + ".txt").toPath()));
+			out.closeEntry();
+		}
+		//a second copy of a daily file in another folder is ignored
+		out.putNextEntry(new ZipEntry("backup/" + dates[0] + ".txt"));
+		out.write("1 CHF traded at 9.99 times USD".getBytes(StandardCharsets.UTF_8));
+		out.closeEntry();
+		out.close();
+
+		ZipCurrencyExchangeRepository repository = new ZipCurrencyExchangeRepository(archive.getPath());
+		try {
+			assertSameContent(repository);
+		} finally {
+			repository.close();
+		}
+	}
+
+	@Test
+	public void testZipArchiveReplacedIsReadAgain() throws Exception {
+		File archive = folder.newFile("history.zip");
+		writeZip(archive, dates[0]);
+		ZipCurrencyExchangeRepository repository = new ZipCurrencyExchangeRepository(archive.getPath());
+		try {
+			assertEquals(Collections.singletonList(dates[0] + ".txt"), repository.getFileNames());
+			InputStream before = repository.open(dates[0]);
+
+			//replaced the way archives are published, by moving a new one over it
+			File replacement = folder.newFile("history.zip.tmp");
+			writeZip(replacement, dates[1]);
+			replacement.setLastModified(archive.lastModified() + 2000);
+			Files.move(replacement.toPath(), archive.toPath(), StandardCopyOption.REPLACE_EXISTING);
+			assertEquals(Collections.singletonList(dates[1] + ".txt"), repository.getFileNames());
+			assertEquals(0, repository.lastModified(dates[0]));
+			assertTrue(repository.lastModified(dates[1]) > 0);
+			DirectoryCurrencyExchangeRepository directory = new DirectoryCurrencyExchangeRepository(fileRepository);
+			assertEquals(readLines(directory.open(dates[1])), readLines(repository.open(dates[1])));
+			//a daily file opened before the replacement is still read to the end
+			assertEquals(readLines(directory.open(dates[0])), readLines(before));
+		} finally {
+			repository.close();
+		}
+	}
+
+	private void writeZip(File archive, String date) throws IOException {
+		ZipOutputStream out = new ZipOutputStream(new FileOutputStream(archive));
+		out.putNextEntry(new ZipEntry(date + ".txt"));
+		out.write(Files.readAllBytes(new File(fileRepository, date + ".txt").toPath()));
+		out.closeEntry();
+		out.close();
+	}
+
+	@Test
+	public void testMonthlyBundleRepository() throws Exception {
+		for (String month : new String[] {"2017-01", "2017-02"}) {
+			OutputStream out = new GZIPOutputStream(new FileOutputStream(new File(folder.getRoot(), month + ".gz")));
+			for (String date : dates) {
+				if (date.startsWith(month)) {
+					out.write(("#" + date + "\n").getBytes(StandardCharsets.UTF_8));
+					out.write(Files.readAllBytes(new File(fileRepository, date + ".txt").toPath()));
+					out.write('\n');
+				}
+			}
+			out.close();
+		}
+
+		assertSameContent(new MonthlyBundleCurrencyExchangeRepository(folder.getRoot().getPath(), 1));
+	}
+
+	private void assertSameContent(CurrencyExchangeRepository repository) throws IOException {
+		DirectoryCurrencyExchangeRepository directory = new DirectoryCurrencyExchangeRepository(fileRepository);
+
+		List<String> expectedNames = new ArrayList<String>();
+		for (String date : dates) expectedNames.add(date + ".txt");
+		List<String> fileNames = new ArrayList<String>(repository.getFileNames());
+		Collections.sort(fileNames);
+		assertEquals(expectedNames, fileNames);
+
+		for (String date : dates) {
+			assertEquals(readLines(directory.open(date)), readLines(repository.open(date)));
+		}
+		try {
+			repository.open("7777-77-77");
+			fail("Expected FileNotFoundException");
+		} catch (FileNotFoundException e) {
+			//expected
+		}
+	}
+
+	private List<String> readLines(InputStream in) throws IOException {
+		ByteArrayOutputStream content = new ByteArrayOutputStream();
+		byte[] buffer = new byte[4096];
+		int read;
+		while ((read = in.read(buffer)) != -1) {
+			content.write(buffer, 0, read);
+		}
+		in.close();
+		List<String> lines = new ArrayList<String>();
+		for (String line : new String(content.toByteArray(), StandardCharsets.UTF_8).split("\r?\n")) {
+			lines.add(line);
+		}
+		return lines;
+	}
+}
@@ -0,0 +1,164 @@
+package interview.dataspark.currencyexchange.tests;
+
+import static org.junit.Assert.*;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.Collections;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.zip.GZIPInputStream;
+
+import javax.servlet.ServletException;
+import javax.servlet.http.HttpServlet;
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletResponse;
+
+import org.junit.Before;
+import org.junit.Test;
+import org.springframework.mock.web.MockFilterChain;
+import org.springframework.mock.web.MockHttpServletRequest;
+import org.springframework.mock.web.MockHttpServletResponse;
+
+import interview.dataspark.currencyexchange.CurrencyExchangeDataChangedEvent;
+import interview.dataspark.currencyexchange.CurrencyExchangeResponseCache;
+
+public class CurrencyExchangeResponseCacheTest {
+
+	private CurrencyExchangeResponseCache responseCache;
+
+	private AtomicInteger controllerCalls;
+
+	private String body;
+
+	@Before
+	public void setUp() throws Exception {
+		responseCache = new CurrencyExchangeResponseCache();
+		responseCache.setEnabled(true);
+		responseCache.setMaxBytes(1 << 20);
+		responseCache.setGzipMinBytes(64);
+		controllerCalls = new AtomicInteger();
+		StringBuilder builder = new StringBuilder("[");
+		for (int i = 0; i < 20; i++) {
+			builder.append(i == 0 ? "" : ",").append("{\"date\":\"2017-01-01\",\"currencyOfInterest\":\"CHF\",\"referenceCurrency\":\"USD\",\"exchangeRate\":1.04}");
+		}
+		body = builder.append("]").toString();
+	}
+
+	private MockHttpServletResponse perform(String uri, String acceptEncoding) throws Exception {
+		MockHttpServletRequest request = new MockHttpServletRequest("GET", uri);
+		if (acceptEncoding != null) request.addHeader("Accept-Encoding", acceptEncoding);
+		return perform(request);
+	}
+
+	private MockHttpServletResponse perform(MockHttpServletRequest request) throws Exception {
+		MockHttpServletResponse response = new MockHttpServletResponse();
+		responseCache.doFilter(request, response, new MockFilterChain(new HttpServlet() {
+			private static final long serialVersionUID = 1L;
+			@Override
+			protected void doGet(HttpServletRequest req, HttpServletResponse resp) throws ServletException, IOException {
+				controllerCalls.incrementAndGet();
+				resp.setContentType("application/json;charset=UTF-8");
+				resp.getWriter().write(body);
+			}
+		}));
+		return response;
+	}
+
+	@Test
+	public void testHitSkipsController() throws Exception {
+		assertEquals(body, perform("/ByDate/2017-01-01", null).getContentAsString());
+		assertEquals(body, perform("/ByDate/2017-01-01", null).getContentAsString());
+		assertEquals(1, controllerCalls.get());
+		assertEquals(1L, responseCache.getMetrics().get("responseCache.hits"));
+
+		MockHttpServletRequest asOf = new MockHttpServletRequest("GET", "/ByDate/2017-01-01");
+		asOf.setParameter("asOf", "true");
+		perform(asOf);
+		assertEquals(2, controllerCalls.get());
+	}
+
+	@Test
+	public void testKeyIgnoresUnusedParameters() throws Exception {
+		perform("/ByDate/2017-01-01", null);
+		MockHttpServletRequest request = new MockHttpServletRequest("GET", "/ByDate/2017-01-01");
+		request.setParameter("asOf", "false");
+		request.setParameter("unused", "1");
+		request.addHeader("Accept", "application/json, text/plain, */*");
+		perform(request);
+		assertEquals(1, controllerCalls.get());
+
+		MockHttpServletRequest xml = new MockHttpServletRequest("GET", "/ByDate/2017-01-01");
+		xml.addHeader("Accept", "application/xml");
+		perform(xml);
+		assertEquals(2, controllerCalls.get());
+	}
+
+	@Test
+	public void testLeastRecentlyUsedIsEvicted() throws Exception {
+		responseCache.setGzipMinBytes(Integer.MAX_VALUE);
+		responseCache.setMaxBytes(body.length() * 2);
+		perform("/ByDate/2017-01-01", null);
+		perform("/ByDate/2017-01-02", null);
+		perform("/ByDate/2017-01-01", null);
+		perform("/ByDate/2017-01-03", null);
+		assertEquals(3, controllerCalls.get());
+		assertEquals(1L, responseCache.getMetrics().get("responseCache.evictions"));
+		assertEquals(2, responseCache.getMetrics().get("responseCache.entries"));
+
+		perform("/ByDate/2017-01-01", null);
+		assertEquals(3, controllerCalls.get());
+		perform("/ByDate/2017-01-02", null);
+		assertEquals(4, controllerCalls.get());
+	}
+
+	@Test
+	public void testGzippedHit() throws Exception {
+		perform("/ByDate/2017-01-01", null);
+		MockHttpServletResponse response = perform("/ByDate/2017-01-01", "gzip, deflate");
+		assertEquals("gzip", response.getHeader("Content-Encoding"));
+		assertEquals(body, gunzip(response.getContentAsByteArray()));
+		assertEquals(1, controllerCalls.get());
+	}
+
+	@Test
+	public void testInvalidatedOnDataChanged() throws Exception {
+		perform("/ByCurrency/CHF/2017-01-01/2017-01-05", null);
+		responseCache.onDataChanged(new CurrencyExchangeDataChangedEvent(this, Collections.singletonList("2017-01-03")));
+		assertEquals(0, responseCache.getMetrics().get("responseCache.entries"));
+		assertEquals(0L, responseCache.getMetrics().get("responseCache.bytes"));
+		perform("/ByCurrency/CHF/2017-01-01/2017-01-05", null);
+		assertEquals(2, controllerCalls.get());
+	}
+
+	@Test
+	public void testMatrixIsCachedPerReferenceCurrency() throws Exception {
+		MockHttpServletRequest request = new MockHttpServletRequest("GET", "/ByCurrencies/CHF,EUR/2017-01-01/2017-01-05");
+		request.setParameter("referenceCurrency", "SGD");
+		perform(request);
+		perform(request);
+		assertEquals(1, controllerCalls.get());
+		perform("/ByCurrencies/CHF,EUR/2017-01-01/2017-01-05", null);
+		assertEquals(2, controllerCalls.get());
+	}
+
+	@Test
+	public void testOtherEndpointsAreNotCached() throws Exception {
+		perform("/Metrics", null);
+		perform("/Metrics", null);
+		assertEquals(2, controllerCalls.get());
+		assertEquals(0, responseCache.getMetrics().get("responseCache.entries"));
+	}
+
+	private String gunzip(byte[] gzipped) throws IOException {
+		InputStream in = new GZIPInputStream(new ByteArrayInputStream(gzipped));
+		ByteArrayOutputStream out = new ByteArrayOutputStream();
+		byte[] buffer = new byte[4096];
+		int read;
+		while ((read = in.read(buffer)) != -1) {
+			out.write(buffer, 0, read);
+		}
+		return new String(out.toByteArray(), "UTF-8");
+	}
+}
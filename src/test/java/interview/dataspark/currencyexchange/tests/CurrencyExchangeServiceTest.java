@@ -0,0 +1,165 @@
+package interview.dataspark.currencyexchange.tests;
+
+import static org.junit.Assert.*;
+
+import java.io.File;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.Arrays;
+import java.util.List;
+
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import interview.dataspark.currencyexchange.CurrencyExchangeMatrix;
+import interview.dataspark.currencyexchange.CurrencyExchangeModel;
+import interview.dataspark.currencyexchange.CurrencyExchangeOffsetIndex;
+import interview.dataspark.currencyexchange.CurrencyExchangeRateStore;
+import interview.dataspark.currencyexchange.CurrencyExchangeService;
+import interview.dataspark.currencyexchange.CurrencyExchangeStartupLoader;
+import interview.dataspark.currencyexchange.DirectoryCurrencyExchangeRepository;
+
+public class CurrencyExchangeServiceTest {
+
+	private String fileRepository = "./src/test/resources";
+
+	private CurrencyExchangeService exchangeService;
+
+	private CurrencyExchangeRateStore rateStore;
+
+	private CurrencyExchangeOffsetIndex offsetIndex;
+
+	@Rule
+	public TemporaryFolder folder = new TemporaryFolder();
+
+	@Before
+	public void setUp() throws Exception {
+		DirectoryCurrencyExchangeRepository repository = new DirectoryCurrencyExchangeRepository(fileRepository);
+		rateStore = new CurrencyExchangeRateStore();
+		rateStore.setRepository(repository);
+		rateStore.setHotWindowDays(31);
+		rateStore.setPromoteAfterHits(3);
+		rateStore.setPromotedCapacity(64);
+		rateStore.init();
+		offsetIndex = new CurrencyExchangeOffsetIndex();
+		offsetIndex.setRepository(repository);
+		offsetIndex.setMaxFiles(16);
+		exchangeService = new CurrencyExchangeService();
+		exchangeService.setRepository(repository);
+		exchangeService.setRateStore(rateStore);
+		exchangeService.setOffsetIndex(offsetIndex);
+	}
+
+	@Test
+	public void testGetRatesByCurrenciesMatchesSingleLookups() throws Exception {
+		String[] currencies = {"CHF", "EUR", "SGD", "XXX"};
+		for (String referenceCurrency : new String[] {null, "EUR", "USD"}) {
+			List<Object> list = exchangeService.getRatesByCurrencies("CHF,EUR,SGD,XXX", "2017-01-10", "2017-01-01", referenceCurrency);
+			assertEquals(1, list.size());
+			CurrencyExchangeMatrix matrix = (CurrencyExchangeMatrix) list.get(0);
+			assertEquals("2017-01-01", matrix.getStartDate());
+			assertEquals(10, matrix.getDates().size());
+			assertEquals(4, matrix.getCurrencies().size());
+
+			assertEquals(4, matrix.getRates().length);
+
+			for (int j = 0; j < currencies.length; j++) {
+				String reference = referenceCurrency == null ? matrix.getReferenceCurrencies().get(j) : referenceCurrency;
+				double[] column = matrix.getRates()[j];
+				assertEquals(10, column.length);
+				for (int i = 0; i < matrix.getDates().size(); i++) {
+					List<Object> single = reference == null ? Arrays.<Object>asList("not recorded")
+							: exchangeService.getSpecificRateByDate(matrix.getDates().get(i), currencies[j], reference);
+					if (single.get(0) instanceof CurrencyExchangeModel) {
+						assertEquals(((CurrencyExchangeModel) single.get(0)).getExchangeRate(), column[i], 0.0);
+					} else {
+						assertTrue(Double.isNaN(column[i]));
+					}
+				}
+			}
+		}
+	}
+
+	@Test
+	public void testOffsetIndexServesSingleLookupsWithoutStartupLoad() throws Exception {
+		offsetIndex.setEnabled(true);
+		CurrencyExchangeStartupLoader startupLoader = new CurrencyExchangeStartupLoader();
+		startupLoader.setRepository(new DirectoryCurrencyExchangeRepository(fileRepository));
+		startupLoader.setRateStore(rateStore);
+		startupLoader.setThreads(4);
+
+		startupLoader.setEnabled(false);
+		startupLoader.run();
+		CurrencyExchangeModel indexed = (CurrencyExchangeModel) exchangeService.getSpecificRateByDate("2017-01-05", "CHF").get(0);
+		assertEquals(1.04, indexed.getExchangeRate(), 0.0);
+		assertEquals(1L, offsetIndex.getMetrics().get("offsetIndex.lookups"));
+		//the lookup read the lines of the currency only, the date is still to be loaded
+		assertFalse(rateStore.snapshot().isLoaded("2017-01-05"));
+
+		startupLoader.setEnabled(true);
+		startupLoader.run();
+		assertTrue(rateStore.snapshot().isLoaded("2017-01-05"));
+		CurrencyExchangeModel loaded = (CurrencyExchangeModel) exchangeService.getSpecificRateByDate("2017-01-05", "CHF").get(0);
+		assertEquals(indexed.getExchangeRate(), loaded.getExchangeRate(), 0.0);
+		assertEquals(1L, offsetIndex.getMetrics().get("offsetIndex.lookups"));
+	}
+
+	@Test
+	public void testGetRatesByCurrenciesWithoutData() throws Exception {
+		assertTrue(exchangeService.getRatesByCurrencies("CHF", "2016-01-01", "2016-12-31", null).get(0) instanceof String);
+		assertTrue(exchangeService.getRatesByCurrencies("XXX", "2017-01-01", "2017-01-31", "USD").get(0) instanceof String);
+		assertEquals("Invalid dates - 7777-77-77, 2017-01-31, expected yyyy-MM-dd format", exchangeService.getRatesByCurrencies("CHF", "7777-77-77", "2017-01-31", "USD").get(0));
+	}
+
+	@Test
+	public void testGetRatesByCurrenciesDoesNotDependOnRecordOrder() throws Exception {
+		File directory = folder.newFolder();
+		Files.write(new File(directory, "2017-01-01.txt").toPath(), "1 CHF traded at 0.9 times EUR\r\n1 CHF traded at 1.0 times USD\r\n1 SGD traded at 0.5 times USD\r\n1 SGD traded at 0.8 times GBP\r\n1 JPY traded at 0.4 times GBP".getBytes(StandardCharsets.UTF_8));
+		Files.write(new File(directory, "2017-01-02.txt").toPath(), "1 CHF traded at 1.01 times USD".getBytes(StandardCharsets.UTF_8));
+		DirectoryCurrencyExchangeRepository repository = new DirectoryCurrencyExchangeRepository(directory.getPath());
+		CurrencyExchangeRateStore rateStore = new CurrencyExchangeRateStore();
+		rateStore.setRepository(repository);
+		rateStore.init();
+		exchangeService.setRepository(repository);
+		exchangeService.setRateStore(rateStore);
+
+		//USD is recorded for CHF on both days, EUR on the first one only
+		CurrencyExchangeMatrix matrix = (CurrencyExchangeMatrix) exchangeService.getRatesByCurrencies("CHF", "2017-01-01", "2017-01-02", null).get(0);
+		assertEquals(Arrays.asList("USD"), matrix.getReferenceCurrencies());
+		assertEquals(1.0, matrix.getRates()[0][0], 0.0);
+		assertEquals(1.01, matrix.getRates()[0][1], 0.0);
+
+		//the cross rate goes through GBP, the only reference currency recorded for both SGD and JPY
+		matrix = (CurrencyExchangeMatrix) exchangeService.getRatesByCurrencies("SGD", "2017-01-01", "2017-01-02", "JPY").get(0);
+		assertEquals(Arrays.asList("2017-01-01"), matrix.getDates());
+		assertEquals(2.0, matrix.getRates()[0][0], 0.0);
+		assertEquals(2.0, ((CurrencyExchangeModel) exchangeService.getSpecificRateByDate("2017-01-01", "SGD", "JPY").get(0)).getExchangeRate(), 0.0);
+	}
+
+	@Test
+	public void testSingleLookupDoesNotDependOnRecordOrder() throws Exception {
+		File directory = folder.newFolder();
+		Files.write(new File(directory, "2017-01-01.txt").toPath(), "1 CHF traded at 0.5 times GBP\r\n1 EUR traded at 0.25 times GBP\r\n1 EUR traded at 0.8 times CHF\r\n1 CHF traded at 1.0 times USD".getBytes(StandardCharsets.UTF_8));
+		Files.write(new File(directory, "2017-01-02.txt").toPath(), "1 CHF traded at 1.0 times USD\r\n1 EUR traded at 0.8 times CHF\r\n1 EUR traded at 0.25 times GBP\r\n1 CHF traded at 0.5 times GBP".getBytes(StandardCharsets.UTF_8));
+		DirectoryCurrencyExchangeRepository repository = new DirectoryCurrencyExchangeRepository(directory.getPath());
+		CurrencyExchangeRateStore rateStore = new CurrencyExchangeRateStore();
+		rateStore.setRepository(repository);
+		rateStore.init();
+		exchangeService.setRepository(repository);
+		exchangeService.setRateStore(rateStore);
+
+		for (String date : new String[] {"2017-01-01", "2017-01-02"}) {
+			//the inverse of the rate recorded for EUR against CHF, rather than the cross rate through GBP
+			List<Object> single = exchangeService.getSpecificRateByDate(date, "CHF", "EUR");
+			assertEquals(1, single.size());
+			assertEquals(1.25, ((CurrencyExchangeModel) single.get(0)).getExchangeRate(), 0.0);
+			assertEquals(0.8, ((CurrencyExchangeModel) exchangeService.getSpecificRateByDate(date, "EUR", "CHF").get(0)).getExchangeRate(), 0.0);
+			assertTrue(exchangeService.getSpecificRateByDate(date, "CHF", "CHF").get(0) instanceof String);
+		}
+		CurrencyExchangeMatrix matrix = (CurrencyExchangeMatrix) exchangeService.getRatesByCurrencies("CHF,EUR", "2017-01-01", "2017-01-02", "CHF").get(0);
+		assertTrue(Double.isNaN(matrix.getRates()[0][0]));
+		assertArrayEquals(new double[] {0.8, 0.8}, matrix.getRates()[1], 0.0);
+	}
+}
@@ -0,0 +1,136 @@
+package interview.dataspark.currencyexchange.tests;
+
+import static org.junit.Assert.*;
+
+import java.io.IOException;
+import java.util.Collections;
+
+import javax.servlet.ServletException;
+import javax.servlet.http.HttpServlet;
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletResponse;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.slf4j.LoggerFactory;
+import org.springframework.http.MediaType;
+import org.springframework.mock.http.MockHttpOutputMessage;
+import org.springframework.mock.web.MockFilterChain;
+import org.springframework.mock.web.MockHttpServletRequest;
+import org.springframework.mock.web.MockHttpServletResponse;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+import ch.qos.logback.classic.Logger;
+import ch.qos.logback.classic.spi.ILoggingEvent;
+import ch.qos.logback.core.read.ListAppender;
+import interview.dataspark.currencyexchange.CurrencyExchangeJsonConverter;
+import interview.dataspark.currencyexchange.CurrencyExchangeRequestTrace;
+import interview.dataspark.currencyexchange.CurrencyExchangeTimingFilter;
+
+public class CurrencyExchangeTimingFilterTest {
+
+	private static final String DURATION = "\\d+\\.\\d{3}";
+
+	private CurrencyExchangeTimingFilter timingFilter;
+
+	private Logger logger;
+
+	private ListAppender<ILoggingEvent> appender;
+
+	@Before
+	public void setUp() throws Exception {
+		timingFilter = new CurrencyExchangeTimingFilter();
+		timingFilter.setEnabled(true);
+		timingFilter.setSlowMillis(60000);
+		logger = (Logger) LoggerFactory.getLogger(CurrencyExchangeTimingFilter.class);
+		appender = new ListAppender<ILoggingEvent>();
+		appender.start();
+		logger.addAppender(appender);
+	}
+
+	@After
+	public void tearDown() throws Exception {
+		logger.detachAppender(appender);
+	}
+
+	private MockHttpServletResponse perform(final boolean fail) throws Exception {
+		MockHttpServletResponse response = new MockHttpServletResponse();
+		timingFilter.doFilter(new MockHttpServletRequest("GET", "/ByDate/2017-01-01"), response, new MockFilterChain(new HttpServlet() {
+			private static final long serialVersionUID = 1L;
+			@Override
+			protected void doGet(HttpServletRequest req, HttpServletResponse resp) throws ServletException, IOException {
+				CurrencyExchangeRequestTrace trace = CurrencyExchangeRequestTrace.current();
+				assertTrue(trace.isActive());
+				trace.end(CurrencyExchangeRequestTrace.Phase.STORE, trace.begin());
+				trace.addDaysScanned(1);
+				if (fail) throw new ServletException("failed");
+			}
+		}));
+		return response;
+	}
+
+	@Test
+	public void testServerTimingFormat() throws Exception {
+		timingFilter.setSampleRate(0);
+		String serverTiming = perform(false).getHeader(CurrencyExchangeTimingFilter.SERVER_TIMING);
+		assertTrue(serverTiming, serverTiming.matches("store;dur=" + DURATION + ", total;dur=" + DURATION));
+	}
+
+	@Test
+	public void testOnlySampledOrSlowRequestsAreLogged() throws Exception {
+		timingFilter.setSampleRate(0);
+		perform(false);
+		assertTrue(appender.list.isEmpty());
+
+		timingFilter.setSampleRate(1);
+		perform(false);
+		assertEquals(1, appender.list.size());
+		String message = appender.list.get(0).getFormattedMessage();
+		assertTrue(message, message.contains("uri=/ByDate/2017-01-01") && message.contains("days=1"));
+
+		timingFilter.setSampleRate(0);
+		timingFilter.setSlowMillis(0);
+		perform(false);
+		assertEquals(2, appender.list.size());
+	}
+
+	@Test
+	public void testTraceIsStoppedOnException() throws Exception {
+		timingFilter.setSampleRate(1);
+		try {
+			perform(true);
+			fail("exception expected");
+		} catch (ServletException e) {
+			assertEquals("failed", e.getMessage());
+		}
+		CurrencyExchangeRequestTrace trace = CurrencyExchangeRequestTrace.current();
+		assertFalse(trace.isActive());
+		assertFalse(trace.isSampled());
+		assertEquals(0, trace.begin());
+		assertEquals(1, appender.list.size());
+	}
+
+	@Test
+	public void testJsonPhaseReportedForSampledRequestsOnly() throws Exception {
+		CurrencyExchangeJsonConverter converter = new CurrencyExchangeJsonConverter(new ObjectMapper());
+		CurrencyExchangeRequestTrace trace = CurrencyExchangeRequestTrace.current();
+		try {
+			trace.start(false);
+			MockHttpOutputMessage streamed = new MockHttpOutputMessage();
+			converter.write(Collections.singletonList("2017-01-01"), MediaType.APPLICATION_JSON, streamed);
+			assertEquals("[\"2017-01-01\"]", streamed.getBodyAsString());
+			assertTrue(streamed.getHeaders().getFirst(CurrencyExchangeTimingFilter.SERVER_TIMING).matches("total;dur=" + DURATION));
+
+			trace.start(true);
+			MockHttpOutputMessage buffered = new MockHttpOutputMessage();
+			converter.write(Collections.singletonList("2017-01-01"), MediaType.APPLICATION_JSON, buffered);
+			assertEquals("[\"2017-01-01\"]", buffered.getBodyAsString());
+			assertEquals(14, buffered.getHeaders().getContentLength());
+			assertTrue(buffered.getHeaders().getFirst(CurrencyExchangeTimingFilter.SERVER_TIMING).matches("json;dur=" + DURATION + ", total;dur=" + DURATION));
+		} finally {
+			trace.stop();
+		}
+	}
+}
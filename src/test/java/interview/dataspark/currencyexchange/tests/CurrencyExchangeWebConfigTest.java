@@ -0,0 +1,116 @@
+package interview.dataspark.currencyexchange.tests;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.mockito.Mockito;
+import org.springframework.context.annotation.AnnotatedBeanDefinitionReader;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.context.annotation.Import;
+import org.springframework.core.env.MapPropertySource;
+import org.springframework.mock.web.MockServletContext;
+import org.springframework.test.web.servlet.MockMvc;
+import org.springframework.web.context.support.GenericWebApplicationContext;
+import org.springframework.web.servlet.config.annotation.EnableWebMvc;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.*;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.*;
+import static org.springframework.test.web.servlet.setup.MockMvcBuilders.*;
+
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+import interview.dataspark.currencyexchange.CurrencyExchangeBulkhead;
+import interview.dataspark.currencyexchange.CurrencyExchangeController;
+import interview.dataspark.currencyexchange.CurrencyExchangeExporter;
+import interview.dataspark.currencyexchange.CurrencyExchangeService;
+import interview.dataspark.currencyexchange.CurrencyExchangeWebConfig;
+
+public class CurrencyExchangeWebConfigTest {
+
+	@Configuration
+	@EnableWebMvc
+	@Import(CurrencyExchangeWebConfig.class)
+	public static class RoutingConfig {
+		@Bean
+		public CurrencyExchangeController exchangeController() {
+			return new CurrencyExchangeController();
+		}
+		@Bean
+		public ObjectMapper objectMapper() {
+			return new ObjectMapper();
+		}
+	}
+
+	//routes of each bulkhead, as registered by CurrencyExchangeWebConfig.addInterceptors
+	private static final Map<String, List<String>> ROUTES = new LinkedHashMap<String, List<String>>();
+	static {
+		ROUTES.put("rangeBulkhead", Arrays.asList("/ByCurrency/SGD/2017-01-01/2017-01-31", "/ByCurrencies/SGD,CHF/2017-01-01/2017-01-31"));
+		ROUTES.put("fullDayBulkhead", Arrays.asList("/ByDate/2017-01-01"));
+		ROUTES.put("pointBulkhead", Arrays.asList("/ByDate/2017-01-01/SGD", "/ByDate/2017-01-01/SGD/USD", "/ByCurrency/SGD/2017-01-01"));
+		ROUTES.put("exportBulkhead", Arrays.asList("/Export/2017-01-01/2017-01-31"));
+	}
+
+	private static final List<String> UNLIMITED = Arrays.asList("/", "/Metrics", "/ByDate", "/ByCurrency", "/ByCurrency/SGD");
+
+	private GenericWebApplicationContext context;
+
+	private MockMvc mockMvc;
+
+	@Before
+	public void setUp() throws Exception {
+		Map<String, Object> properties = new HashMap<String, Object>();
+		properties.put("bulkhead.retryAfterSeconds", "3");
+		for (String bulkhead : new String[] {"range", "fullDay", "point", "export"}) {
+			properties.put("bulkhead." + bulkhead + ".maxConcurrent", "1");
+			properties.put("bulkhead." + bulkhead + ".maxQueued", "0");
+		}
+		context = new GenericWebApplicationContext(new MockServletContext());
+		context.getEnvironment().getPropertySources().addFirst(new MapPropertySource("bulkheads", properties));
+		//registered as they are, so that the fields the mocks inherit are not autowired
+		context.getBeanFactory().registerSingleton("exchangeService", Mockito.mock(CurrencyExchangeService.class));
+		context.getBeanFactory().registerSingleton("exporter", Mockito.mock(CurrencyExchangeExporter.class));
+		new AnnotatedBeanDefinitionReader(context).register(RoutingConfig.class);
+		context.refresh();
+		mockMvc = webAppContextSetup(context).build();
+	}
+
+	@After
+	public void tearDown() throws Exception {
+		context.close();
+	}
+
+	@Test
+	public void testSaturatedBulkheadRejectsOnlyItsRoutes() throws Exception {
+		for (String saturated : ROUTES.keySet()) {
+			CurrencyExchangeBulkhead bulkhead = context.getBean(saturated, CurrencyExchangeBulkhead.class);
+			bulkhead.tryAcquire();
+			try {
+				for (Map.Entry<String, List<String>> routes : ROUTES.entrySet()) {
+					for (String route : routes.getValue()) {
+						if (routes.getKey().equals(saturated)) {
+							mockMvc.perform(get(route))
+							.andExpect(status().isServiceUnavailable())
+							.andExpect(header().string("Retry-After", "3"));
+						} else {
+							mockMvc.perform(get(route))
+							.andExpect(status().isOk());
+						}
+					}
+				}
+				for (String route : UNLIMITED) {
+					mockMvc.perform(get(route))
+					.andExpect(status().isOk());
+				}
+			} finally {
+				bulkhead.release();
+			}
+		}
+	}
+}